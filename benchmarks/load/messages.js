@@ -0,0 +1,66 @@
+// Mixed read/write load against the message endpoints with 1000 concurrent clients.
+//
+//   k6 run -e BASE_URL=http://localhost:8083 -e TOKEN=<access token> \
+//          -e FIXTURE=sessions.json benchmarks/load/messages.js
+//
+// sessions.json holds [{"sessionId": "...", "senderId": "...", "receiverId": "..."}, ...],
+// e.g. exported from the sessions table of the database under test.
+import http from 'k6/http';
+import { check } from 'k6';
+import { SharedArray } from 'k6/data';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8083';
+const VUS = parseInt(__ENV.VUS || '1000');
+
+const sessions = new SharedArray('sessions', () => JSON.parse(open(__ENV.FIXTURE || 'sessions.json')));
+
+const params = {
+    headers: {
+        'Authorization': `Bearer ${__ENV.TOKEN}`,
+        'Content-Type': 'application/json',
+    },
+};
+
+export const options = {
+    scenarios: {
+        clients: {
+            executor: 'ramping-vus',
+            startVUs: 0,
+            stages: [
+                { duration: '30s', target: VUS },
+                { duration: '2m', target: VUS },
+                { duration: '15s', target: 0 },
+            ],
+        },
+    },
+    thresholds: {
+        http_req_failed: ['rate<0.01'],
+        'http_req_duration{kind:read}': ['p(95)<500'],
+        'http_req_duration{kind:write}': ['p(95)<1000'],
+    },
+};
+
+export default function () {
+    const session = sessions[Math.floor(Math.random() * sessions.length)];
+    const roll = Math.random();
+    let response;
+    if (roll < 0.4) {
+        response = http.get(`${BASE_URL}/messages/session/${session.sessionId}/page`,
+            Object.assign({ tags: { kind: 'read', name: 'page' } }, params));
+    } else if (roll < 0.6) {
+        response = http.get(`${BASE_URL}/sessions/inbox/user/${session.receiverId}`,
+            Object.assign({ tags: { kind: 'read', name: 'inbox' } }, params));
+    } else if (roll < 0.8) {
+        response = http.get(`${BASE_URL}/messages/latest/session/${session.sessionId}`,
+            Object.assign({ tags: { kind: 'read', name: 'latest' } }, params));
+    } else {
+        const body = JSON.stringify({
+            sessionId: session.sessionId,
+            senderId: session.senderId,
+            message: 'Load test message with a typical amount of text for a short clinical question',
+        });
+        response = http.post(`${BASE_URL}/messages`, body,
+            Object.assign({ tags: { kind: 'write', name: 'create' } }, params));
+    }
+    check(response, { 'status is 2xx': (r) => r.status >= 200 && r.status < 300 });
+}
@@ -0,0 +1,44 @@
+package se.kth.patientjournal.benchmarks;
+
+import core.services.MessageService;
+import core.services.SessionService;
+import data.repositories.MessageRepository;
+import data.repositories.SessionRepository;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/** The running service with a seeded database, shared by all threads of a fork */
+@State(Scope.Benchmark)
+public class ApplicationState {
+
+    @Param("10000")
+    public int sessions;
+
+    @Param("100")
+    public int messagesPerSession;
+
+    public Dataset dataset;
+    public MessageRepository messageRepository;
+    public SessionRepository sessionRepository;
+    public MessageService messageService;
+    public SessionService sessionService;
+
+    @Setup(Level.Trial)
+    public void start() {
+        QuarkusHarness.start();
+        dataset = Dataset.seed(sessions, messagesPerSession);
+        messageRepository = QuarkusHarness.bean(MessageRepository.class);
+        sessionRepository = QuarkusHarness.bean(SessionRepository.class);
+        messageService = QuarkusHarness.bean(MessageService.class);
+        sessionService = QuarkusHarness.bean(SessionService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        QuarkusHarness.stop();
+    }
+}
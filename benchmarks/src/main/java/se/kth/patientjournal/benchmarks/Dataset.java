@@ -0,0 +1,169 @@
+package se.kth.patientjournal.benchmarks;
+
+import io.agroal.api.AgroalDataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Realistic data volume for the H2 database behind the benchmarks.
+ * Every patient has one session with one of the doctors; messages alternate between
+ * the two participants. Seeded with set-based SQL, which is far faster than going
+ * through the service for a million rows.
+ */
+public final class Dataset {
+
+    private static final int PATIENTS_PER_DOCTOR = 100;
+
+    private static Dataset seeded;
+
+    private final UUID[] sessionIds;
+    private final UUID[] doctorIds;
+    private final UUID[] patientIds;
+    private final int messagesPerSession;
+    private final int historyMonths;
+    private final LocalDateTime created;
+    private final long secondsBetweenMessages;
+
+    private Dataset(int sessions, int messagesPerSession, int historyMonths) {
+        this.sessionIds = new UUID[sessions];
+        this.patientIds = new UUID[sessions];
+        this.doctorIds = new UUID[Math.max(1, sessions / PATIENTS_PER_DOCTOR)];
+        this.messagesPerSession = messagesPerSession;
+        this.historyMonths = historyMonths;
+        LocalDateTime now = LocalDateTime.now();
+        if (historyMonths == 0) {
+            this.created = now.minusDays(30);
+            this.secondsBetweenMessages = 1;
+        } else {
+            this.created = now.minusMonths(historyMonths);
+            this.secondsBetweenMessages = Math.max(1, Duration.between(created, now).toSeconds() / messagesPerSession);
+        }
+    }
+
+    /** Seeds the database on first use in this JVM and returns the dataset */
+    public static synchronized Dataset seed(int sessions, int messagesPerSession) {
+        return seed(sessions, messagesPerSession, 0);
+    }
+
+    /**
+     * As {@link #seed(int, int)}, but each session's messages are spread evenly over the last
+     * {@code historyMonths} months instead of written a second apart a month ago
+     */
+    public static synchronized Dataset seed(int sessions, int messagesPerSession, int historyMonths) {
+        if (seeded != null) {
+            if (seeded.sessionIds.length != sessions || seeded.messagesPerSession != messagesPerSession
+                    || seeded.historyMonths != historyMonths) {
+                throw new IllegalStateException("Only one dataset size can be used per fork");
+            }
+            return seeded;
+        }
+        Dataset dataset = new Dataset(sessions, messagesPerSession, historyMonths);
+        try (Connection connection = QuarkusHarness.bean(AgroalDataSource.class).getConnection()) {
+            connection.setAutoCommit(false);
+            dataset.insertUsersAndSessions(connection);
+            dataset.insertMessages(connection);
+            connection.commit();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to seed benchmark data", e);
+        }
+        seeded = dataset;
+        return dataset;
+    }
+
+    public UUID randomSession() {
+        return sessionIds[ThreadLocalRandom.current().nextInt(sessionIds.length)];
+    }
+
+    public UUID randomDoctor() {
+        return doctorIds[ThreadLocalRandom.current().nextInt(doctorIds.length)];
+    }
+
+    public UUID randomPatient() {
+        return patientIds[ThreadLocalRandom.current().nextInt(patientIds.length)];
+    }
+
+    /** Index-aligned with {@link #patientIds}: session i is between patient i and its doctor */
+    public int randomSessionIndex() {
+        return ThreadLocalRandom.current().nextInt(sessionIds.length);
+    }
+
+    public UUID sessionAt(int index) {
+        return sessionIds[index];
+    }
+
+    public UUID patientAt(int index) {
+        return patientIds[index];
+    }
+
+    private void insertUsersAndSessions(Connection connection) throws SQLException {
+        String insertUser = "INSERT INTO users (user_id, user_role, full_name, email, password, user_type) VALUES (?, 'User', ?, ?, 'x', ?)";
+        try (PreparedStatement users = connection.prepareStatement(insertUser)) {
+            for (int i = 0; i < doctorIds.length; i++) {
+                doctorIds[i] = UUID.randomUUID();
+                addUser(users, doctorIds[i], "Doctor " + i, "doctor" + i + "@bench.test", "Doctor");
+            }
+            for (int i = 0; i < patientIds.length; i++) {
+                patientIds[i] = UUID.randomUUID();
+                addUser(users, patientIds[i], "Patient " + i, "patient" + i + "@bench.test", "Patient");
+            }
+            users.executeBatch();
+        }
+
+        String insertSession = """
+                INSERT INTO sessions (session_id, sender_id, receiver_id, subject, creation_date, message_count, event_sequence, revision, last_activity)
+                VALUES (?, ?, ?, ?, ?, 0, 0, 0, ?)""";
+        try (PreparedStatement sessions = connection.prepareStatement(insertSession)) {
+            for (int i = 0; i < sessionIds.length; i++) {
+                sessionIds[i] = UUID.randomUUID();
+                sessions.setObject(1, sessionIds[i]);
+                sessions.setObject(2, patientIds[i]);
+                sessions.setObject(3, doctorIds[i % doctorIds.length]);
+                sessions.setString(4, "Subject " + i);
+                sessions.setTimestamp(5, Timestamp.valueOf(created));
+                sessions.setTimestamp(6, Timestamp.valueOf(created));
+                sessions.addBatch();
+                if (i % 1000 == 999) {
+                    sessions.executeBatch();
+                }
+            }
+            sessions.executeBatch();
+        }
+    }
+
+    private void insertMessages(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("""
+                    INSERT INTO messages (message_id, session_id, sender_id, message, date_time)
+                    SELECT RANDOM_UUID(), s.session_id,
+                           CASE WHEN MOD(r.X, 2) = 0 THEN s.sender_id ELSE s.receiver_id END,
+                           'Benchmark message ' || r.X || ' with a typical amount of text for a short clinical question',
+                           DATEADD('SECOND', r.X * %d, s.creation_date)
+                    FROM sessions s CROSS JOIN SYSTEM_RANGE(1, %d) r""".formatted(secondsBetweenMessages, messagesPerSession));
+            statement.executeUpdate("""
+                    UPDATE sessions s SET
+                        message_count = %d,
+                        last_activity = DATEADD('SECOND', %d, s.creation_date),
+                        last_message_id = (SELECT m.message_id FROM messages m
+                                           WHERE m.session_id = s.session_id
+                                           ORDER BY m.date_time DESC, m.message_id DESC
+                                           LIMIT 1),
+                        last_message_preview = 'Benchmark message'""".formatted(messagesPerSession, messagesPerSession * secondsBetweenMessages));
+        }
+    }
+
+    private static void addUser(PreparedStatement users, UUID id, String name, String email, String type) throws SQLException {
+        users.setObject(1, id);
+        users.setString(2, name);
+        users.setString(3, email);
+        users.setString(4, type);
+        users.addBatch();
+    }
+}
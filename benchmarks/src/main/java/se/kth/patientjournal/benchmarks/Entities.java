@@ -0,0 +1,21 @@
+package se.kth.patientjournal.benchmarks;
+
+import java.lang.reflect.Field;
+import java.util.UUID;
+
+/** Assigns the generated ID of entities that are built without being persisted */
+final class Entities {
+
+    private Entities() {}
+
+    static <T> T withId(T entity, String idField) {
+        try {
+            Field field = entity.getClass().getDeclaredField(idField);
+            field.setAccessible(true);
+            field.set(entity, UUID.randomUUID());
+            return entity;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package se.kth.patientjournal.benchmarks;
+
+import api.dto.MessageCreatedEvent;
+import core.outbox.MessageEventSerializer;
+import core.push.MessageCreatedEventDeserializer;
+import io.quarkus.kafka.client.serialization.ObjectMapperSerializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kafka encoding of one message event, JSON against the binary codec. The encoded size of
+ * each is printed at setup, since JMH only reports time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventEncodingBenchmark {
+
+    @Param({"json", "binary"})
+    String encoding;
+
+    @Param({"80", "1000"})
+    int contentLength;
+
+    Serializer<MessageCreatedEvent> serializer;
+    MessageCreatedEventDeserializer deserializer;
+    MessageCreatedEvent event;
+    byte[] encoded;
+
+    @Setup
+    public void setUp() {
+        serializer = encoding.equals("binary")
+                ? new MessageEventSerializer()
+                : new ObjectMapperSerializer<>();
+        deserializer = new MessageCreatedEventDeserializer();
+        event = new MessageCreatedEvent();
+        event.messageId = UUID.randomUUID();
+        event.sessionId = UUID.randomUUID();
+        event.senderId = UUID.randomUUID();
+        event.receiverId = UUID.randomUUID();
+        event.content = "x".repeat(contentLength);
+        event.timestamp = System.currentTimeMillis();
+        encoded = serializer.serialize("chat-messages", event);
+        System.out.printf("%n%s event with %d characters of content: %d bytes%n",
+                encoding, contentLength, encoded.length);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize("chat-messages", event);
+    }
+
+    @Benchmark
+    public MessageCreatedEvent deserialize() {
+        return deserializer.deserialize("chat-messages", encoded);
+    }
+}
@@ -0,0 +1,78 @@
+package se.kth.patientjournal.benchmarks;
+
+import data.entities.Message;
+import data.repositories.MessageRepository;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The recent-history queries as each session's history grows from one month to four years
+ * at the same rate of messages per month. The scores should stay flat, as each query only
+ * needs a page or a time range of the history; see the README for what H2 can show.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class HistoryGrowthBenchmark {
+
+    private static final int PAGE_SIZE = 50;
+
+    @State(Scope.Benchmark)
+    public static class HistoryState {
+
+        @Param({"1", "12", "48"})
+        public int historyMonths;
+
+        @Param("1000")
+        public int sessions;
+
+        @Param("30")
+        public int messagesPerMonth;
+
+        Dataset dataset;
+        MessageRepository messageRepository;
+
+        @Setup(Level.Trial)
+        public void start() {
+            QuarkusHarness.start();
+            dataset = Dataset.seed(sessions, messagesPerMonth * historyMonths, historyMonths);
+            messageRepository = QuarkusHarness.bean(MessageRepository.class);
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            QuarkusHarness.stop();
+        }
+    }
+
+    @Benchmark
+    public List<Message> findLatestSessionMessages(HistoryState state) {
+        UUID sessionId = state.dataset.randomSession();
+        return QuarkusTransaction.requiringNew().call(() ->
+                state.messageRepository.findLatestSessionMessages(sessionId, PAGE_SIZE + 1));
+    }
+
+    @Benchmark
+    public List<Message> findSessionMessagesBefore(HistoryState state) {
+        UUID sessionId = state.dataset.randomSession();
+        return QuarkusTransaction.requiringNew().call(() -> {
+            Message newest = state.messageRepository.findLatestSessionMessages(sessionId, 1).get(0);
+            return state.messageRepository.findSessionMessagesBefore(sessionId, newest.getDateTime(), newest.getMessageId(), PAGE_SIZE + 1);
+        });
+    }
+
+    @Benchmark
+    public List<Message> findSessionMessagesAfterLastWeek(HistoryState state) {
+        UUID sessionId = state.dataset.randomSession();
+        LocalDateTime weekAgo = LocalDateTime.now().minusDays(7);
+        return QuarkusTransaction.requiringNew().call(() ->
+                state.messageRepository.findSessionMessagesAfter(sessionId, weekAgo, new UUID(0L, 0L), PAGE_SIZE + 1));
+    }
+}
@@ -0,0 +1,56 @@
+package se.kth.patientjournal.benchmarks;
+
+import api.dto.MessageDTO;
+import api.dto.SessionDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/** Response serialization of a session with its messages, configured like the Quarkus ObjectMapper */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int messagesPerSession;
+
+    ObjectMapper objectMapper;
+    SessionDTO session;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        session = new SessionDTO();
+        session.sessionId = UUID.randomUUID();
+        session.senderId = UUID.randomUUID();
+        session.receiverId = UUID.randomUUID();
+        session.subject = "Subject";
+        session.messages = new ArrayList<>(messagesPerSession);
+        LocalDateTime start = LocalDateTime.now();
+        for (int i = 0; i < messagesPerSession; i++) {
+            UUID sender = i % 2 == 0 ? session.senderId : session.receiverId;
+            session.messages.add(new MessageDTO(UUID.randomUUID(), session.sessionId, sender,
+                    "Benchmark message " + i + " with a typical amount of text for a short clinical question",
+                    start.plusSeconds(i)));
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeSessionWithMessages() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(session);
+    }
+}
@@ -0,0 +1,52 @@
+package se.kth.patientjournal.benchmarks;
+
+import api.dto.MessageDTO;
+import org.jboss.logging.Logger;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-message logging cost on the write path under concurrency: the former System.out
+ * lines, which build strings and take the stream lock on every call, against the current
+ * parameterised debug logging with debug disabled.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class LoggingBenchmark {
+
+    private static final Logger LOG = Logger.getLogger(LoggingBenchmark.class);
+
+    // Stands in for the container's stdout without flooding the benchmark output
+    PrintStream stdout;
+    MessageDTO dto;
+
+    @Setup
+    public void setUp() {
+        stdout = new PrintStream(OutputStream.nullOutputStream(), true);
+        dto = new MessageDTO(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(),
+                "Benchmark message with a typical amount of text for a short clinical question", LocalDateTime.now());
+    }
+
+    @Benchmark
+    public void systemOutLines() {
+        stdout.println("DEBUG: createMessage called with DTO: " + dto);
+        stdout.println("DEBUG: Message persisted to DB with ID: " + dto.messageId);
+        stdout.println("DEBUG: Prepared Kafka event for Receiver: " + dto.senderId);
+        stdout.println("DEBUG: Successfully sent to Kafka topic!");
+    }
+
+    @Benchmark
+    public void jbossLoggingDebugDisabled() {
+        LOG.debugf("Stored message %s in session %s", dto.messageId, dto.sessionId);
+    }
+}
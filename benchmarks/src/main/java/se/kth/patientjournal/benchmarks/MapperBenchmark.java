@@ -0,0 +1,52 @@
+package se.kth.patientjournal.benchmarks;
+
+import api.dto.MessageDTO;
+import api.dto.SessionDTO;
+import core.enums.UserType;
+import core.mappers.DTOMapper;
+import data.entities.Message;
+import data.entities.Session;
+import data.entities.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/** Entity to DTO mapping, without a database */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MapperBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int messagesPerSession;
+
+    Session session;
+    List<Message> messages;
+
+    @Setup
+    public void setUp() {
+        User doctor = Entities.withId(new User("Doctor", "doctor@bench.test", "x", UserType.Doctor), "id");
+        session = Entities.withId(new Session(UUID.randomUUID(), doctor.getId(), "Subject", LocalDateTime.now()), "sessionId");
+        messages = new ArrayList<>(messagesPerSession);
+        for (int i = 0; i < messagesPerSession; i++) {
+            messages.add(Entities.withId(new Message(session, doctor, "Benchmark message " + i), "messageId"));
+        }
+    }
+
+    @Benchmark
+    public MessageDTO toMessageDTO() {
+        return DTOMapper.toMessageDTO(messages.get(0));
+    }
+
+    @Benchmark
+    public SessionDTO toSessionDTO() {
+        return DTOMapper.toSessionDTO(session, messages);
+    }
+}
@@ -0,0 +1,164 @@
+package se.kth.patientjournal.benchmarks;
+
+import org.hibernate.id.uuid.UuidVersion7Strategy;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Message inserts into a table shaped like {@code messages}, keyed by random (v4) or
+ * time-ordered (v7) UUIDs, the latter from the generator the entities use. The table and
+ * index sizes are printed after seeding and after each trial, since JMH only reports time.
+ * Plain JDBC, against a file-based H2 database by default; point {@code jdbcUrl} at a
+ * scratch MySQL schema to measure InnoDB, whose page splits H2 does not have.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(1)
+@State(Scope.Benchmark)
+public class PrimaryKeyBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+    private static final int SESSIONS = 1000;
+    private static final String TABLE = "key_benchmark";
+
+    @Param({"v4", "v7"})
+    public String keys;
+
+    @Param("1000000")
+    public int seededRows;
+
+    @Param("jdbc:h2:file:./target/key-benchmark")
+    public String jdbcUrl;
+
+    @Param("sa")
+    public String user;
+
+    @Param("")
+    public String password;
+
+    Connection connection;
+    PreparedStatement insert;
+    byte[][] sessionIds;
+    byte[] senderId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection(jdbcUrl, user, password);
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + TABLE);
+            // The columns of messages, with its primary key and its session history index,
+            // which repeats the primary key in every entry
+            statement.execute("""
+                    CREATE TABLE key_benchmark (
+                        message_id BINARY(16)    NOT NULL,
+                        session_id BINARY(16)    NOT NULL,
+                        sender_id  BINARY(16)    NOT NULL,
+                        message    VARCHAR(1000) NOT NULL,
+                        date_time  TIMESTAMP(6)  NOT NULL,
+                        PRIMARY KEY (message_id)
+                    )""");
+            statement.execute("CREATE INDEX idx_key_benchmark_session_time ON key_benchmark (session_id, date_time, message_id)");
+        }
+        connection.commit();
+
+        sessionIds = new byte[SESSIONS][];
+        for (int i = 0; i < SESSIONS; i++) {
+            sessionIds[i] = bytes(UUID.randomUUID());
+        }
+        senderId = bytes(UUID.randomUUID());
+        insert = connection.prepareStatement(
+                "INSERT INTO key_benchmark (message_id, session_id, sender_id, message, date_time) VALUES (?, ?, ?, ?, ?)");
+        for (int seeded = 0; seeded < seededRows; seeded += BATCH_SIZE) {
+            insertBatch();
+        }
+        printSize("after seeding " + seededRows + " rows");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        printSize("after the trial");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE " + TABLE);
+        }
+        connection.commit();
+        connection.close();
+    }
+
+    /** One transaction of {@value #BATCH_SIZE} messages, as a JDBC batch; each message counts as an operation */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int[] insertBatch() throws SQLException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            insert.setBytes(1, bytes(nextKey()));
+            insert.setBytes(2, sessionIds[random.nextInt(SESSIONS)]);
+            insert.setBytes(3, senderId);
+            insert.setString(4, "How are you feeling after the new dose?");
+            insert.setTimestamp(5, now);
+            insert.addBatch();
+        }
+        int[] counts = insert.executeBatch();
+        connection.commit();
+        return counts;
+    }
+
+    private UUID nextKey() {
+        return keys.equals("v7") ? UuidVersion7Strategy.INSTANCE.generateUuid(null) : UUID.randomUUID();
+    }
+
+    private void printSize(String when) throws SQLException {
+        long rows;
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM " + TABLE)) {
+            result.next();
+            rows = result.getLong(1);
+        }
+        String product = connection.getMetaData().getDatabaseProductName();
+        if (product.equals("MySQL")) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ANALYZE TABLE " + TABLE);
+                try (ResultSet result = statement.executeQuery("""
+                        SELECT data_length, index_length FROM information_schema.tables
+                        WHERE table_schema = DATABASE() AND table_name = 'key_benchmark'""")) {
+                    result.next();
+                    // InnoDB stores the rows in the primary key, so data_length is that index
+                    System.out.printf("%n%s keys %s: %d rows, primary key %d bytes (%d per row), secondary index %d bytes (%d per row)%n",
+                            keys, when, rows, result.getLong(1), result.getLong(1) / rows,
+                            result.getLong(2), result.getLong(2) / rows);
+                }
+            }
+        } else {
+            try (Statement statement = connection.createStatement();
+                 ResultSet result = statement.executeQuery("SELECT DISK_SPACE_USED('KEY_BENCHMARK')")) {
+                result.next();
+                System.out.printf("%n%s keys %s: %d rows, table and indexes %d bytes (%d per row)%n",
+                        keys, when, rows, result.getLong(1), result.getLong(1) / rows);
+            }
+        }
+        connection.commit();
+    }
+
+    private static byte[] bytes(UUID id) {
+        return ByteBuffer.allocate(16)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .array();
+    }
+}
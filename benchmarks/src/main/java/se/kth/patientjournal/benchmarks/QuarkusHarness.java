@@ -0,0 +1,71 @@
+package se.kth.patientjournal.benchmarks;
+
+import io.quarkus.arc.Arc;
+import io.quarkus.arc.ManagedContext;
+import io.quarkus.runtime.Quarkus;
+import io.quarkus.runtime.QuarkusApplication;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Starts the service once per benchmark JVM and hands out its beans.
+ * The application keeps running in the background until {@link #stop()}.
+ */
+public class QuarkusHarness implements QuarkusApplication {
+
+    private static final CountDownLatch STARTED = new CountDownLatch(1);
+    private static volatile Throwable startFailure;
+    private static boolean launched;
+
+    public static synchronized void start() {
+        if (!launched) {
+            launched = true;
+            Thread main = new Thread(() -> Quarkus.run(QuarkusHarness.class, (code, failure) -> {
+                startFailure = failure != null ? failure : new IllegalStateException("Quarkus exited with " + code);
+                STARTED.countDown();
+            }), "quarkus-main");
+            main.setDaemon(true);
+            main.start();
+        }
+        try {
+            if (!STARTED.await(2, TimeUnit.MINUTES)) {
+                throw new IllegalStateException("Quarkus did not start within two minutes");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        if (startFailure != null) {
+            throw new IllegalStateException("Quarkus failed to start", startFailure);
+        }
+    }
+
+    /** Lets the fork exit without waiting for the JMH shutdown timeout on Quarkus' threads */
+    public static void stop() {
+        Quarkus.asyncExit();
+    }
+
+    public static <T> T bean(Class<T> type) {
+        return Arc.container().instance(type).get();
+    }
+
+    /** Runs the call in its own request context, as a read endpoint does outside a transaction */
+    public static <T> T inRequest(Supplier<T> call) {
+        ManagedContext requestContext = Arc.container().requestContext();
+        requestContext.activate();
+        try {
+            return call.get();
+        } finally {
+            requestContext.terminate();
+        }
+    }
+
+    @Override
+    public int run(String... args) {
+        STARTED.countDown();
+        Quarkus.waitForExit();
+        return 0;
+    }
+}
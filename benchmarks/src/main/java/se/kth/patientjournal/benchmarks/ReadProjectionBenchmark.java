@@ -0,0 +1,68 @@
+package se.kth.patientjournal.benchmarks;
+
+import api.dto.MessageDTO;
+import api.dto.SessionDTO;
+import core.mappers.DTOMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The reads behind the GET endpoints, as managed entities mapped by {@link DTOMapper}
+ * against the DTO projections the services use. Each call is one request context without a
+ * transaction, like an endpoint. Run with {@code -prof gc}: gc.alloc.rate.norm is the
+ * allocation per request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ReadProjectionBenchmark {
+
+    private static final int PAGE_SIZE = 50;
+
+    @Benchmark
+    public List<MessageDTO> sessionHistoryEntities(ApplicationState app) {
+        UUID sessionId = app.dataset.randomSession();
+        return QuarkusHarness.inRequest(() -> app.messageRepository.findBySessionId(sessionId).stream()
+                .map(DTOMapper::toMessageDTO)
+                .toList());
+    }
+
+    @Benchmark
+    public List<MessageDTO> sessionHistoryProjection(ApplicationState app) {
+        UUID sessionId = app.dataset.randomSession();
+        return QuarkusHarness.inRequest(() -> app.messageRepository.findBySessionIdAsDTO(sessionId));
+    }
+
+    @Benchmark
+    public List<MessageDTO> latestPageEntities(ApplicationState app) {
+        UUID sessionId = app.dataset.randomSession();
+        return QuarkusHarness.inRequest(() -> app.messageRepository.findLatestSessionMessages(sessionId, PAGE_SIZE + 1).stream()
+                .map(DTOMapper::toMessageDTO)
+                .toList());
+    }
+
+    @Benchmark
+    public List<MessageDTO> latestPageProjection(ApplicationState app) {
+        UUID sessionId = app.dataset.randomSession();
+        return QuarkusHarness.inRequest(() -> app.messageRepository.findLatestSessionMessagesAsDTO(sessionId, PAGE_SIZE + 1));
+    }
+
+    @Benchmark
+    public List<SessionDTO> userSessionsEntities(ApplicationState app) {
+        UUID doctorId = app.dataset.randomDoctor();
+        return QuarkusHarness.inRequest(() -> app.sessionRepository.findAllUserSessions(doctorId).stream()
+                .map(session -> DTOMapper.toSessionDTO(session, false))
+                .toList());
+    }
+
+    @Benchmark
+    public List<SessionDTO> userSessionsProjection(ApplicationState app) {
+        UUID doctorId = app.dataset.randomDoctor();
+        return QuarkusHarness.inRequest(() -> app.sessionRepository.findAllUserSessionsAsDTO(doctorId));
+    }
+}
@@ -0,0 +1,67 @@
+package se.kth.patientjournal.benchmarks;
+
+import data.entities.Message;
+import data.entities.Session;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/** The hot repository queries against the seeded dataset, one transaction per call */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RepositoryBenchmark {
+
+    private static final int PAGE_SIZE = 50;
+    private static final int SESSIONS_PER_BATCH = 20;
+
+    @Benchmark
+    public List<Message> findLatestSessionMessages(ApplicationState app) {
+        UUID sessionId = app.dataset.randomSession();
+        return QuarkusTransaction.requiringNew().call(() ->
+                app.messageRepository.findLatestSessionMessages(sessionId, PAGE_SIZE + 1));
+    }
+
+    @Benchmark
+    public List<Message> findSessionMessagesBefore(ApplicationState app) {
+        UUID sessionId = app.dataset.randomSession();
+        return QuarkusTransaction.requiringNew().call(() -> {
+            List<Message> newest = app.messageRepository.findLatestSessionMessages(sessionId, 1);
+            Message cursor = newest.get(0);
+            return app.messageRepository.findSessionMessagesBefore(sessionId, cursor.getDateTime(), cursor.getMessageId(), PAGE_SIZE + 1);
+        });
+    }
+
+    @Benchmark
+    public List<Message> findBySessionIds(ApplicationState app) {
+        List<UUID> sessionIds = new ArrayList<>(SESSIONS_PER_BATCH);
+        for (int i = 0; i < SESSIONS_PER_BATCH; i++) {
+            sessionIds.add(app.dataset.randomSession());
+        }
+        return QuarkusTransaction.requiringNew().call(() -> app.messageRepository.findBySessionIds(sessionIds));
+    }
+
+    @Benchmark
+    public List<Session> findAllUserSessions(ApplicationState app) {
+        UUID doctorId = app.dataset.randomDoctor();
+        return QuarkusTransaction.requiringNew().call(() -> app.sessionRepository.findAllUserSessions(doctorId));
+    }
+
+    @Benchmark
+    public List<Session> findUserSessionsByActivity(ApplicationState app) {
+        UUID doctorId = app.dataset.randomDoctor();
+        return QuarkusTransaction.requiringNew().call(() -> app.sessionRepository.findUserSessionsByActivity(doctorId, PAGE_SIZE));
+    }
+
+    @Benchmark
+    public Long countBySession(ApplicationState app) {
+        UUID sessionId = app.dataset.randomSession();
+        return QuarkusTransaction.requiringNew().call(() -> app.messageRepository.countBySession(sessionId));
+    }
+}
@@ -0,0 +1,71 @@
+package se.kth.patientjournal.benchmarks;
+
+import api.dto.MessageBatchResultDTO;
+import api.dto.MessageDTO;
+import api.dto.MessagePageDTO;
+import api.dto.SessionDTO;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MessageService end to end on H2: the read paths clients call per session, and the write
+ * path one message at a time against the batch endpoint. The batch benchmark counts each
+ * message as one operation, so both write scores are messages per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ServiceBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Benchmark
+    public MessagePageDTO getSessionMessagesPage(ApplicationState app) {
+        UUID sessionId = app.dataset.randomSession();
+        return QuarkusTransaction.requiringNew().call(() ->
+                app.messageService.getSessionMessagesPage(sessionId, null, null, null));
+    }
+
+    @Benchmark
+    public MessageDTO getLatestMessage(ApplicationState app) {
+        UUID sessionId = app.dataset.randomSession();
+        return QuarkusTransaction.requiringNew().call(() -> app.messageService.getLatestMessage(sessionId));
+    }
+
+    @Benchmark
+    public List<SessionDTO> getInbox(ApplicationState app) {
+        UUID doctorId = app.dataset.randomDoctor();
+        return QuarkusTransaction.requiringNew().call(() -> app.sessionService.getInbox(doctorId, null));
+    }
+
+    @Benchmark
+    public MessageDTO createMessage(ApplicationState app) {
+        int session = app.dataset.randomSessionIndex();
+        return app.messageService.createMessage(newMessage(app, session));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public MessageBatchResultDTO createMessagesBatch(ApplicationState app) {
+        List<MessageDTO> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(newMessage(app, app.dataset.randomSessionIndex()));
+        }
+        return app.messageService.createMessages(batch);
+    }
+
+    private static MessageDTO newMessage(ApplicationState app, int session) {
+        MessageDTO dto = new MessageDTO();
+        dto.sessionId = app.dataset.sessionAt(session);
+        dto.senderId = app.dataset.patientAt(session);
+        dto.message = "Benchmark message with a typical amount of text for a short clinical question";
+        return dto;
+    }
+}
@@ -1,40 +1,93 @@
 package api.controllers;
 
+import api.dto.MessageBatchResultDTO;
 import api.dto.MessageDTO;
+import api.dto.MessagePageDTO;
 import api.dto.SessionDTO;
+import api.dto.SessionDeletionJobDTO;
+import api.streaming.JsonStreams;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import core.services.MessageService;
+import core.services.SessionDeletionJobs;
 import core.services.SessionService;
+import io.smallrye.common.annotation.RunOnVirtualThread;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.CacheControl;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 
+import java.net.URI;
 import java.util.List;
 import java.util.UUID;
 
+/**
+ * Every endpoint blocks on JDBC, so requests run on virtual threads: a waiting request
+ * costs no platform thread, and concurrency is bounded by the connection pool instead
+ * of the worker pool.
+ */
 @Path("")
+@RunOnVirtualThread
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
 public class MessageController {
 
+    /**
+     * Patient data: clients may keep it but must revalidate, and shared caches must not store it.
+     * ETags are read before the body, so a body is never older than its tag.
+     */
+    private static final CacheControl REVALIDATE = CacheControl.valueOf("private, no-cache");
+
     @Inject
     MessageService messageService;
 
     @Inject
     SessionService sessionService;
 
+    @Inject
+    SessionDeletionJobs deletionJobs;
+
+    @Inject
+    ObjectMapper objectMapper;
+
     // =======================
     // GET
     // =======================
 
-    /** Get all messages in a session */
+    /** Get all messages in a session, streamed from a cursor so memory does not grow with the history */
     @GET
     @Path("/messages/session/{sessionId}")
     @RolesAllowed({"Patient", "Doctor", "OtherStaff"})
-    public List<MessageDTO> getSessionMessages(@PathParam("sessionId") UUID sessionId) {
-        return messageService.getSessionMessages(sessionId);
+    public StreamingOutput getSessionMessages(@PathParam("sessionId") UUID sessionId) {
+        messageService.requireSession(sessionId);
+        return JsonStreams.<MessageDTO>array(objectMapper, sink -> messageService.streamSessionMessages(sessionId, sink));
+    }
+
+    /** Get all messages in a session as newline-delimited JSON, one message per line */
+    @GET
+    @Path("/messages/session/{sessionId}")
+    @Produces(JsonStreams.NDJSON)
+    @RolesAllowed({"Patient", "Doctor", "OtherStaff"})
+    public StreamingOutput getSessionMessagesNdjson(@PathParam("sessionId") UUID sessionId) {
+        messageService.requireSession(sessionId);
+        return JsonStreams.<MessageDTO>ndjson(objectMapper, sink -> messageService.streamSessionMessages(sessionId, sink));
+    }
+
+    /** Get one page of messages in a session, keyed by opaque before/after cursors */
+    @GET
+    @Path("/messages/session/{sessionId}/page")
+    @RolesAllowed({"Patient", "Doctor", "OtherStaff"})
+    public MessagePageDTO getSessionMessagesPage(@PathParam("sessionId") UUID sessionId,
+                                                 @QueryParam("before") String before,
+                                                 @QueryParam("after") String after,
+                                                 @QueryParam("limit") Integer limit) {
+        return messageService.getSessionMessagesPage(sessionId, before, after, limit);
     }
 
     /** Get message by ID */
@@ -53,30 +106,71 @@ public class MessageController {
         return messageService.getLatestMessage(sessionId);
     }
 
-    /** Search messages by content */
+    /** Search messages by content, ranked by relevance and optionally limited to one user's sessions */
     @GET
     @Path("/messages/search")
     @RolesAllowed({"Patient", "Doctor", "OtherStaff"})
-    public List<MessageDTO> searchMessages(@QueryParam("q") String searchTerm) {
-        return messageService.searchMessages(searchTerm);
+    public List<MessageDTO> searchMessages(@QueryParam("q") String searchTerm,
+                                           @QueryParam("userId") UUID userId,
+                                           @QueryParam("page") @DefaultValue("0") int page,
+                                           @QueryParam("size") Integer size) {
+        return messageService.searchMessages(searchTerm, userId, page, size);
     }
 
-    /** Get all sessions for a user */
+    /**
+     * Get all sessions for a user; with messages the response is streamed session by session.
+     * A request whose If-None-Match still matches gets 304 without any session being loaded.
+     */
     @GET
     @Path("/sessions/user/{userId}")
     @RolesAllowed({"Patient", "Doctor", "OtherStaff"})
-    public List<SessionDTO> getUserSessions(@PathParam("userId") UUID userId,
-                                            @QueryParam("includeMessages") @DefaultValue("false") boolean includeMessages) {
-        return sessionService.getUserSessions(userId, includeMessages);
+    public Response getUserSessions(@PathParam("userId") UUID userId,
+                                    @QueryParam("includeMessages") @DefaultValue("false") boolean includeMessages,
+                                    @Context Request request) {
+        EntityTag tag = new EntityTag(sessionService.getUserSessionsRevision(userId));
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        if (notModified != null) {
+            return notModified.cacheControl(REVALIDATE).build();
+        }
+        Object body = includeMessages
+                ? JsonStreams.sessionsWithMessages(objectMapper, sink -> sessionService.streamUserSessions(userId, sink))
+                : sessionService.getUserSessions(userId, false);
+        return Response.ok(body).tag(tag).cacheControl(REVALIDATE).build();
     }
 
-    /** Get session by ID */
+    /** Get a user's most recently active sessions with last message preview and message count */
+    @GET
+    @Path("/sessions/inbox/user/{userId}")
+    @RolesAllowed({"Patient", "Doctor", "OtherStaff"})
+    public List<SessionDTO> getInbox(@PathParam("userId") UUID userId,
+                                     @QueryParam("limit") Integer limit) {
+        return sessionService.getInbox(userId, limit);
+    }
+
+    /** Get session by ID; 304 without loading the session or its messages if the ETag still matches */
     @GET
     @Path("/sessions/{sessionId}")
     @RolesAllowed({"Patient", "Doctor", "OtherStaff"})
-    public SessionDTO getSessionById(@PathParam("sessionId") UUID sessionId,
-                                     @QueryParam("includeMessages") @DefaultValue("false") boolean includeMessages) {
-        return sessionService.getSessionById(sessionId, includeMessages);
+    public Response getSessionById(@PathParam("sessionId") UUID sessionId,
+                                   @QueryParam("includeMessages") @DefaultValue("false") boolean includeMessages,
+                                   @Context Request request) {
+        EntityTag tag = new EntityTag(Long.toString(sessionService.getSessionRevision(sessionId)));
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        if (notModified != null) {
+            return notModified.cacheControl(REVALIDATE).build();
+        }
+        return Response.ok(sessionService.getSessionById(sessionId, includeMessages))
+                .tag(tag).cacheControl(REVALIDATE).build();
+    }
+
+    /** Progress of a background session delete, started on any node */
+    @GET
+    @Path("/sessions/deletions/{jobId}")
+    @RolesAllowed({"Patient", "Doctor", "OtherStaff"})
+    public Response getSessionDeletion(@PathParam("jobId") UUID jobId) {
+        return deletionJobs.find(jobId)
+                .map(job -> Response.ok(job).build())
+                .orElseGet(() -> Response.status(Response.Status.NOT_FOUND).build());
     }
 
     /** Get sessions between two users */
@@ -131,6 +225,23 @@ public class MessageController {
         return messageService.createMessage(dto);
     }
 
+    /**
+     * Create many messages at once. Answers 200 when all were stored, 207 when some were
+     * rejected and 400 when none were; rejected items are listed by their index in the request.
+     */
+    @POST
+    @Path("/messages/batch")
+    @Transactional
+    @RolesAllowed({"Patient", "Doctor", "OtherStaff"})
+    public Response createMessages(List<MessageDTO> dtos) {
+        MessageBatchResultDTO result = messageService.createMessages(dtos);
+        if (!result.hasErrors()) {
+            return Response.ok(result).build();
+        }
+        int status = result.created.isEmpty() ? Response.Status.BAD_REQUEST.getStatusCode() : 207;
+        return Response.status(status).entity(result).build();
+    }
+
     /** Create a new session */
     @POST
     @Path("/sessions")
@@ -160,12 +271,21 @@ public class MessageController {
         }
     }
 
-    /** Delete a session */
+    /**
+     * Delete a session with all its messages. With {@code async=true} the delete runs in the
+     * background and the response is 202 with the job, whose progress is at the Location URL.
+     */
     @DELETE
     @Path("/sessions/{sessionId}")
-    @Transactional
     @RolesAllowed({"Patient", "Doctor", "OtherStaff"})
-    public Response deleteSession(@PathParam("sessionId") UUID sessionId) {
+    public Response deleteSession(@PathParam("sessionId") UUID sessionId,
+                                  @QueryParam("async") @DefaultValue("false") boolean async) {
+        if (async) {
+            SessionDeletionJobDTO job = deletionJobs.start(sessionId);
+            return Response.accepted(job)
+                    .location(URI.create("/sessions/deletions/" + job.jobId))
+                    .build();
+        }
         boolean deleted = sessionService.deleteSession(sessionId);
         return deleted ? Response.noContent().build() : Response.status(Response.Status.NOT_FOUND).build();
     }
@@ -0,0 +1,43 @@
+package api.controllers;
+
+import api.dto.MessageDTO;
+import api.security.PushPermissions;
+import core.push.MessagePushRegistry;
+import io.quarkus.security.PermissionsAllowed;
+import io.smallrye.mutiny.Multi;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import org.jboss.resteasy.reactive.RestStreamElementType;
+
+import java.util.UUID;
+
+/**
+ * Pushes new messages to connected clients. Unlike the rest of the API this does not run on
+ * virtual threads: a subscription waits on the event loop and holds no thread at all. The
+ * check of the caller reads the database, so it runs on a worker thread before the endpoint;
+ * see {@link PushPermissions}.
+ */
+@Path("")
+public class MessagePushController {
+
+    @Inject
+    MessagePushRegistry pushRegistry;
+
+    /**
+     * Server-sent events with each new message in the caller's sessions once it is stored.
+     * A client that falls too far behind is disconnected; it should reconnect and load what
+     * it missed from the message page endpoint with an after cursor.
+     */
+    @GET
+    @Path("/sessions/events/user/{userId}")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    @PermissionsAllowed(PushPermissions.SUBSCRIBE)
+    public Multi<MessageDTO> subscribeToMessages(@PathParam("userId") UUID userId) {
+        return pushRegistry.subscribe(userId);
+    }
+}
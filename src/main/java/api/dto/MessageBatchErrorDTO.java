@@ -0,0 +1,13 @@
+package api.dto;
+
+public class MessageBatchErrorDTO {
+    public int index;
+    public String error;
+
+    public MessageBatchErrorDTO() {}
+
+    public MessageBatchErrorDTO(int index, String error) {
+        this.index = index;
+        this.error = error;
+    }
+}
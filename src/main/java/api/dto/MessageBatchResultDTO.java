@@ -0,0 +1,27 @@
+package api.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a batch create. {@code created} holds the stored messages in request order,
+ * {@code errors} names each rejected item by its index in the request.
+ */
+public class MessageBatchResultDTO {
+    public List<MessageDTO> created;
+    public List<MessageBatchErrorDTO> errors;
+
+    public MessageBatchResultDTO() {
+        this.created = new ArrayList<>();
+        this.errors = new ArrayList<>();
+    }
+
+    public MessageBatchResultDTO(List<MessageDTO> created, List<MessageBatchErrorDTO> errors) {
+        this.created = created != null ? created : new ArrayList<>();
+        this.errors = errors != null ? errors : new ArrayList<>();
+    }
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+}
@@ -9,6 +9,20 @@ public class MessageCreatedEvent {
     public UUID senderId;
     public String content;
     public long timestamp;
+    // Position in the session, from 1 with no gaps; events are keyed by session on Kafka
+    public long sequence;
 
     public MessageCreatedEvent() {}
-}
\ No newline at end of file
+
+    // Message content is patient data and is never part of the string form
+    @Override
+    public String toString() {
+        return "MessageCreatedEvent{messageId=" + messageId
+                + ", sessionId=" + sessionId
+                + ", senderId=" + senderId
+                + ", receiverId=" + receiverId
+                + ", content=" + (content != null ? "<redacted " + content.length() + " chars>" : null)
+                + ", timestamp=" + timestamp
+                + ", sequence=" + sequence + "}";
+    }
+}
@@ -21,4 +21,14 @@ public class MessageDTO {
         this.message = message;
         this.dateTime = dateTime;
     }
+
+    // Message content is patient data and is never part of the string form
+    @Override
+    public String toString() {
+        return "MessageDTO{messageId=" + messageId
+                + ", sessionId=" + sessionId
+                + ", senderId=" + senderId
+                + ", message=" + (message != null ? "<redacted " + message.length() + " chars>" : null)
+                + ", dateTime=" + dateTime + "}";
+    }
 }
@@ -0,0 +1,15 @@
+package api.dto;
+
+import java.util.UUID;
+
+public class MessageDeletedEvent {
+    public UUID messageId;
+    public UUID sessionId;
+
+    public MessageDeletedEvent() {}
+
+    public MessageDeletedEvent(UUID messageId, UUID sessionId) {
+        this.messageId = messageId;
+        this.sessionId = sessionId;
+    }
+}
@@ -0,0 +1,22 @@
+package api.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MessagePageDTO {
+    public List<MessageDTO> messages;
+    public String beforeCursor;
+    public String afterCursor;
+    public boolean hasMore;
+
+    public MessagePageDTO() {
+        this.messages = new ArrayList<>();
+    }
+
+    public MessagePageDTO(List<MessageDTO> messages, String beforeCursor, String afterCursor, boolean hasMore) {
+        this.messages = messages != null ? messages : new ArrayList<>();
+        this.beforeCursor = beforeCursor;
+        this.afterCursor = afterCursor;
+        this.hasMore = hasMore;
+    }
+}
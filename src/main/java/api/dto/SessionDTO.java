@@ -1,5 +1,7 @@
 package api.dto;
 
+import io.quarkus.hibernate.orm.panache.common.ProjectedConstructor;
+
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -12,6 +14,10 @@ public class SessionDTO {
     public UUID senderId;
     public UUID receiverId;
     public List<MessageDTO> messages;
+    public long messageCount;
+    public UUID lastMessageId;
+    public String lastMessagePreview;
+    public LocalDateTime lastActivity;
 
     public SessionDTO() {
         this.messages = new ArrayList<>();
@@ -26,4 +32,15 @@ public class SessionDTO {
         this.receiverId = receiverId;
         this.messages = messages != null ? messages : new ArrayList<>();
     }
+
+    // Projection of the session summary; parameter names match the Session fields
+    @ProjectedConstructor
+    public SessionDTO(UUID sessionId, String subject, LocalDateTime creationDate, UUID senderId, UUID receiverId,
+                      long messageCount, UUID lastMessageId, String lastMessagePreview, LocalDateTime lastActivity) {
+        this(sessionId, subject, creationDate, senderId, receiverId, null);
+        this.messageCount = messageCount;
+        this.lastMessageId = lastMessageId;
+        this.lastMessagePreview = lastMessagePreview;
+        this.lastActivity = lastActivity;
+    }
 }
@@ -0,0 +1,13 @@
+package api.dto;
+
+import java.util.UUID;
+
+public class SessionDeletedEvent {
+    public UUID sessionId;
+
+    public SessionDeletedEvent() {}
+
+    public SessionDeletedEvent(UUID sessionId) {
+        this.sessionId = sessionId;
+    }
+}
@@ -0,0 +1,29 @@
+package api.dto;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Progress of a background session delete. {@code status} is RUNNING, DONE, NOT_FOUND or
+ * FAILED; {@code deletedMessages} counts up while it runs.
+ */
+public class SessionDeletionJobDTO {
+    public UUID jobId;
+    public UUID sessionId;
+    public String status;
+    public long deletedMessages;
+    public LocalDateTime startedAt;
+    public LocalDateTime finishedAt;
+
+    public SessionDeletionJobDTO() {}
+
+    public SessionDeletionJobDTO(UUID jobId, UUID sessionId, String status, long deletedMessages,
+                                 LocalDateTime startedAt, LocalDateTime finishedAt) {
+        this.jobId = jobId;
+        this.sessionId = sessionId;
+        this.status = status;
+        this.deletedMessages = deletedMessages;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+    }
+}
@@ -0,0 +1,36 @@
+package api.filters;
+
+import core.logging.CorrelationId;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.container.PreMatching;
+import jakarta.ws.rs.ext.Provider;
+
+/**
+ * Takes the correlation ID from the {@code X-Correlation-ID} request header, or creates
+ * one, makes it available to logging for the rest of the request and echoes it back.
+ */
+@Provider
+@PreMatching
+public class CorrelationIdFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final String PROPERTY = CorrelationIdFilter.class.getName();
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        String correlationId = CorrelationId.sanitizeOrGenerate(request.getHeaderString(CorrelationId.HTTP_HEADER));
+        request.setProperty(PROPERTY, correlationId);
+        CorrelationId.set(correlationId);
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        Object correlationId = request.getProperty(PROPERTY);
+        if (correlationId != null) {
+            response.getHeaders().putSingle(CorrelationId.HTTP_HEADER, correlationId);
+        }
+        CorrelationId.clear();
+    }
+}
@@ -0,0 +1,42 @@
+package api.filters;
+
+import core.routing.ReadRouting;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.NewCookie;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.Provider;
+
+import java.util.Set;
+
+/**
+ * Gives the author of a successful write the time of it in a cookie that lasts the
+ * read-your-writes window, which keeps them reading from the primary; see {@link ReadRouting}
+ */
+@Provider
+public class ReadYourWritesFilter implements ContainerResponseFilter {
+
+    private static final Set<String> READS = Set.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS);
+
+    @Inject
+    ReadRouting readRouting;
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        if (readRouting.isEnabled()
+                && !READS.contains(request.getMethod())
+                && response.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL) {
+            NewCookie lastWrite = new NewCookie.Builder(ReadRouting.LAST_WRITE_COOKIE)
+                    .value(Long.toString(System.currentTimeMillis()))
+                    .path("/")
+                    .maxAge((int) readRouting.getWindow().toSeconds() + 1)
+                    .httpOnly(true)
+                    .build();
+            response.getHeaders().add(HttpHeaders.SET_COOKIE, lastWrite);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package api.security;
+
+import core.services.SessionService;
+import io.quarkus.security.PermissionChecker;
+import io.quarkus.security.identity.SecurityIdentity;
+import io.smallrye.common.annotation.Blocking;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.util.Set;
+import java.util.UUID;
+
+/** Who may subscribe to message pushes: users with an API role, and only to their own sessions */
+@ApplicationScoped
+public class PushPermissions {
+
+    public static final String SUBSCRIBE = "subscribe-to-messages";
+
+    private static final Set<String> ROLES = Set.of("Patient", "Doctor", "OtherStaff");
+
+    @Inject
+    SessionService sessionService;
+
+    // Blocking: reads the user, so Quarkus runs it on a worker thread, not the event loop
+    @Blocking
+    @PermissionChecker(SUBSCRIBE)
+    boolean canSubscribe(SecurityIdentity identity, UUID userId) {
+        return !identity.isAnonymous()
+                && identity.getRoles().stream().anyMatch(ROLES::contains)
+                && sessionService.isCaller(userId, identity.getPrincipal().getName());
+    }
+}
@@ -0,0 +1,121 @@
+package api.streaming;
+
+import api.dto.MessageDTO;
+import api.dto.SessionDTO;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import core.services.SessionService;
+import jakarta.ws.rs.core.StreamingOutput;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Response bodies that serialize items while they are produced, so a response never holds
+ * the whole result in memory. The producer runs while the body is written, typically a
+ * service method reading a database cursor. Validate before returning one of these: once
+ * writing has started, a failure can only abort the response.
+ */
+public final class JsonStreams {
+
+    public static final String NDJSON = "application/x-ndjson";
+
+    private JsonStreams() {}
+
+    /** Calls the sink once per item, in order */
+    @FunctionalInterface
+    public interface Producer<T> {
+        void produce(Consumer<T> sink);
+    }
+
+    /** The items as one JSON array, identical to serializing the whole list */
+    public static <T> StreamingOutput array(ObjectMapper mapper, Producer<T> producer) {
+        return output -> write(mapper, output, (writer, generator) -> {
+            generator.writeStartArray();
+            producer.produce(item -> writeValue(writer, generator, item));
+            generator.writeEndArray();
+        });
+    }
+
+    /** The items as newline-delimited JSON, one item per line */
+    public static <T> StreamingOutput ndjson(ObjectMapper mapper, Producer<T> producer) {
+        return output -> write(mapper, output, (writer, generator) -> producer.produce(item -> {
+            writeValue(writer, generator, item);
+            try {
+                generator.writeRaw('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+    }
+
+    /** A JSON array of sessions, each with its messages streamed into its "messages" field */
+    public static StreamingOutput sessionsWithMessages(ObjectMapper mapper, Consumer<SessionService.SessionSink> producer) {
+        return output -> write(mapper, output, (writer, generator) -> {
+            generator.writeStartArray();
+            producer.accept(new SessionService.SessionSink() {
+                @Override
+                public void startSession(SessionDTO session) {
+                    ObjectNode fields = mapper.valueToTree(session);
+                    fields.remove("messages");
+                    try {
+                        generator.writeStartObject();
+                        for (Map.Entry<String, JsonNode> field : fields.properties()) {
+                            generator.writeFieldName(field.getKey());
+                            generator.writeTree(field.getValue());
+                        }
+                        generator.writeArrayFieldStart("messages");
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+
+                @Override
+                public void message(MessageDTO message) {
+                    writeValue(writer, generator, message);
+                }
+
+                @Override
+                public void endSession() {
+                    try {
+                        generator.writeEndArray();
+                        generator.writeEndObject();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+            generator.writeEndArray();
+        });
+    }
+
+    private interface Body {
+        void write(ObjectWriter writer, JsonGenerator generator) throws IOException;
+    }
+
+    private static void write(ObjectMapper mapper, OutputStream output, Body body) throws IOException {
+        // Flushing after every item would turn each one into its own chunk on the wire
+        ObjectWriter writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(output)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            body.write(writer, generator);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void writeValue(ObjectWriter writer, JsonGenerator generator, Object value) {
+        try {
+            writer.writeValue(generator, value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
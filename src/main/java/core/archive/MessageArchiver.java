@@ -0,0 +1,154 @@
+package core.archive;
+
+import core.cluster.JobLeases;
+import data.repositories.ArchivedMessageRepository;
+import data.repositories.MessageRepository;
+import data.repositories.SessionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.common.annotation.RunOnVirtualThread;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Moves messages older than {@code message-archive.max-age} from {@code messages} into
+ * {@code messages_archive}, session by session, oldest first. Each batch is copied and
+ * deleted in its own transaction, followed by a pause, so the job never holds many locks
+ * and leaves most of the database to live traffic.
+ * Every session's archive therefore holds a strictly older prefix of its history, which
+ * lets reads append archived messages to the live ones. Nothing younger than
+ * {@link #MIN_AGE} is ever archived, so reads of recent sessions never look at the archive.
+ * <p>
+ * Every node schedules the job, but only the holder of the {@value #ARCHIVE_LEASE} lease
+ * archives, renewing it before each batch; a node that loses it stops. Each batch also locks
+ * the messages it moves and skips those locked by someone else, so two runs that overlap
+ * while the lease changes hands never move the same message twice.
+ */
+@ApplicationScoped
+public class MessageArchiver {
+
+    private static final Logger LOG = Logger.getLogger(MessageArchiver.class);
+
+    public static final Duration MIN_AGE = Duration.ofDays(30);
+    public static final String MOVED_COUNTER = "message.archive.moved";
+    public static final String ARCHIVE_LEASE = "message-archiver";
+
+    private static final int SESSION_PAGE_SIZE = 500;
+    // Sorts before every ID, as the database compares them byte by byte
+    private static final UUID FIRST_ID = new UUID(0L, 0L);
+
+    @Inject
+    MessageRepository messageRepository;
+
+    @Inject
+    ArchivedMessageRepository archivedMessageRepository;
+
+    @Inject
+    SessionRepository sessionRepository;
+
+    @Inject
+    JobLeases jobLeases;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "message-archive.max-age", defaultValue = "365d")
+    Duration maxAge;
+
+    @ConfigProperty(name = "message-archive.batch-size", defaultValue = "500")
+    int batchSize;
+
+    @ConfigProperty(name = "message-archive.pause", defaultValue = "200ms")
+    Duration pause;
+
+    @ConfigProperty(name = "message-archive.lease", defaultValue = "5m")
+    Duration lease;
+
+    /** Whether messages written at {@code dateTime} may have been archived */
+    public static boolean mayBeArchived(LocalDateTime dateTime) {
+        return dateTime == null || dateTime.isBefore(LocalDateTime.now().minus(MIN_AGE));
+    }
+
+    void validate(@Observes StartupEvent event) {
+        if (maxAge.compareTo(MIN_AGE) < 0) {
+            throw new IllegalStateException("message-archive.max-age must be at least " + MIN_AGE.toDays() + " days");
+        }
+    }
+
+    @Scheduled(every = "${message-archive.interval:1h}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    @RunOnVirtualThread
+    void archiveOldMessages() {
+        long moved = archiveBefore(LocalDateTime.now().minus(maxAge));
+        if (moved > 0) {
+            LOG.infof("Archived %d messages older than %s", moved, maxAge);
+        }
+    }
+
+    /**
+     * Archives every message written before {@code cutoff}; returns how many were moved.
+     * Moves nothing while another node holds the archive lease, and stops if it loses it.
+     */
+    public long archiveBefore(LocalDateTime cutoff) {
+        long moved = 0;
+        UUID afterId = FIRST_ID;
+        List<UUID> sessionIds;
+        do {
+            if (!jobLeases.tryAcquire(ARCHIVE_LEASE, lease)) {
+                return moved;
+            }
+            UUID from = afterId;
+            sessionIds = QuarkusTransaction.requiringNew().call(
+                    () -> sessionRepository.findIdsCreatedBefore(cutoff, from, SESSION_PAGE_SIZE));
+            for (UUID sessionId : sessionIds) {
+                moved += archiveSession(sessionId, cutoff);
+            }
+            if (!sessionIds.isEmpty()) {
+                afterId = sessionIds.get(sessionIds.size() - 1);
+            }
+        } while (sessionIds.size() == SESSION_PAGE_SIZE);
+        return moved;
+    }
+
+    private long archiveSession(UUID sessionId, LocalDateTime cutoff) {
+        long moved = 0;
+        int batch;
+        do {
+            if (!jobLeases.tryAcquire(ARCHIVE_LEASE, lease)) {
+                return moved;
+            }
+            batch = QuarkusTransaction.requiringNew().call(() -> {
+                List<UUID> ids = messageRepository.lockIdsBefore(sessionId, cutoff, batchSize);
+                if (!ids.isEmpty()) {
+                    archivedMessageRepository.copyFromMessages(ids, LocalDateTime.now());
+                    messageRepository.deleteByIds(ids);
+                }
+                return ids.size();
+            });
+            if (batch > 0) {
+                moved += batch;
+                registry.counter(MOVED_COUNTER).increment(batch);
+                sleep();
+            }
+        } while (batch == batchSize);
+        return moved;
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(pause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Archiving was interrupted", e);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package core.archive;
+
+import core.archive.MessagePartitions.Partition;
+import data.repositories.MessagePartitionRepository;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.common.annotation.RunOnVirtualThread;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Looks after the monthly partitions of {@code messages} when the table is partitioned
+ * (the partitioned profile): adds partitions for the coming months ahead of time, and drops
+ * partitions older than {@code message-archive.max-age}. An expired partition is only
+ * dropped once {@link MessageArchiver} has moved all of its rows to the archive, so a drop
+ * never loses a message and costs no more than removing a file.
+ * <p>
+ * Every node runs the maintenance, at startup and then on a schedule. When two nodes change
+ * the partitions at the same time the later change fails; a failed change is checked against
+ * the partitions as they are now, and is fine when the other node has already made it.
+ * <p>
+ * The primary key is (message_id, date_time), so a lookup by message ID alone reads every
+ * partition; lookups that know the message's time should give it.
+ */
+@ApplicationScoped
+public class MessagePartitionMaintainer {
+
+    private static final Logger LOG = Logger.getLogger(MessagePartitionMaintainer.class);
+
+    @Inject
+    MessagePartitionRepository partitionRepository;
+
+    @ConfigProperty(name = "message-partitioning.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "message-partitioning.months-ahead", defaultValue = "3")
+    int monthsAhead;
+
+    @ConfigProperty(name = "message-archive.max-age", defaultValue = "365d")
+    Duration maxAge;
+
+    // After the migrations, so the first partitions exist before the first message is stored.
+    // A failure must not keep the node from starting: p_future still takes every new message,
+    // and the scheduled run tries again.
+    void onStart(@Observes StartupEvent event) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            maintain();
+        } catch (RuntimeException e) {
+            LOG.error("Message partition maintenance failed at startup; it is retried every message-partitioning.interval", e);
+        }
+    }
+
+    @Scheduled(every = "${message-partitioning.interval:24h}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    @RunOnVirtualThread
+    void scheduledMaintenance() {
+        if (enabled) {
+            maintain();
+        }
+    }
+
+    public void maintain() {
+        List<Partition> partitions = partitionRepository.findPartitions();
+        if (partitions.isEmpty()) {
+            throw new IllegalStateException("The messages table is not partitioned; migrate it with the partitioned profile");
+        }
+
+        List<Partition> added = MessagePartitions.missing(partitions, LocalDate.now(), monthsAhead);
+        if (!added.isEmpty()) {
+            try {
+                partitionRepository.addPartitions(added);
+                LOG.infof("Added %d message partitions up to %s", added.size(), added.get(added.size() - 1).getName());
+            } catch (IllegalStateException e) {
+                if (!MessagePartitions.missing(partitionRepository.findPartitions(), LocalDate.now(), monthsAhead).isEmpty()) {
+                    throw e;
+                }
+                LOG.debug("Message partitions were added by another node meanwhile");
+            }
+        }
+
+        for (Partition partition : MessagePartitions.expired(partitions, LocalDateTime.now().minus(maxAge))) {
+            if (!partitionRepository.isEmpty(partition)) {
+                LOG.debugf("Message partition %s has expired but is not archived yet", partition.getName());
+                continue;
+            }
+            try {
+                partitionRepository.dropPartition(partition);
+                LOG.infof("Dropped expired message partition %s", partition.getName());
+            } catch (IllegalStateException e) {
+                if (partitionRepository.findPartitions().stream().anyMatch(p -> p.getName().equals(partition.getName()))) {
+                    throw e;
+                }
+                LOG.debugf("Message partition %s was dropped by another node meanwhile", partition.getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package core.archive;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.StringJoiner;
+
+/**
+ * Monthly RANGE COLUMNS partitions of {@code messages} on {@code date_time}. Partition
+ * {@code pYYYYMM} holds that month, the first partition everything before it and
+ * {@code p_future} everything after the last one. Maintenance keeps months ready ahead of
+ * time, so {@code p_future} stays empty and splitting it never moves rows.
+ * Only plans the changes; MessagePartitionRepository runs them.
+ */
+public final class MessagePartitions {
+
+    public static final String FUTURE = "p_future";
+
+    private static final DateTimeFormatter MONTH_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+    private static final DateTimeFormatter BOUND = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private MessagePartitions() {
+    }
+
+    /** One partition; holds rows with {@code date_time} below its bound, or any row when unbounded */
+    public static final class Partition {
+
+        private final String name;
+        private final LocalDateTime upperBound;
+
+        public Partition(String name, LocalDateTime upperBound) {
+            this.name = name;
+            this.upperBound = upperBound;
+        }
+
+        /** From {@code information_schema.partitions}, where a bound reads {@code '2026-11-01 00:00:00'} */
+        public static Partition parse(String name, String description) {
+            if (description == null || description.equals("MAXVALUE")) {
+                return new Partition(name, null);
+            }
+            try {
+                return new Partition(name, LocalDateTime.parse(description.replace("'", ""), BOUND));
+            } catch (DateTimeParseException e) {
+                throw new IllegalStateException("Unexpected bound of message partition " + name + ": " + description, e);
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /** Exclusive; null for {@code MAXVALUE} */
+        public LocalDateTime getUpperBound() {
+            return upperBound;
+        }
+    }
+
+    /**
+     * Monthly partitions to split off {@code p_future} so that every month up to
+     * {@code monthsAhead} after the current one has its own partition, in order.
+     */
+    public static List<Partition> missing(List<Partition> existing, LocalDate today, int monthsAhead) {
+        LocalDate currentMonth = today.withDayOfMonth(1);
+        LocalDate start = existing.stream()
+                .map(Partition::getUpperBound)
+                .filter(Objects::nonNull)
+                .max(LocalDateTime::compareTo)
+                .map(bound -> bound.toLocalDate().withDayOfMonth(1))
+                .orElse(currentMonth);
+        LocalDate end = currentMonth.plusMonths(monthsAhead + 1L);
+
+        List<Partition> added = new ArrayList<>();
+        for (LocalDate month = start; month.isBefore(end); month = month.plusMonths(1)) {
+            added.add(new Partition(MONTH_NAME.format(month), month.plusMonths(1).atStartOfDay()));
+        }
+        return added;
+    }
+
+    /** Partitions whose rows are all older than {@code cutoff}, so archiving empties them */
+    public static List<Partition> expired(List<Partition> existing, LocalDateTime cutoff) {
+        return existing.stream()
+                .filter(p -> p.getUpperBound() != null && !p.getUpperBound().isAfter(cutoff))
+                .toList();
+    }
+
+    public static String reorganizeFuture(List<Partition> added) {
+        StringJoiner partitions = new StringJoiner(", ",
+                "ALTER TABLE messages REORGANIZE PARTITION " + FUTURE + " INTO (", ")");
+        for (Partition partition : added) {
+            partitions.add("PARTITION %s VALUES LESS THAN ('%s')"
+                    .formatted(partition.getName(), BOUND.format(partition.getUpperBound())));
+        }
+        partitions.add("PARTITION " + FUTURE + " VALUES LESS THAN (MAXVALUE)");
+        return partitions.toString();
+    }
+
+    public static String drop(Partition partition) {
+        return "ALTER TABLE messages DROP PARTITION " + partition.getName();
+    }
+}
@@ -0,0 +1,134 @@
+package core.cache;
+
+import data.entities.Session;
+import data.repositories.SessionRepository;
+import data.repositories.UserRepository;
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheInvalidate;
+import io.quarkus.cache.CacheName;
+import io.quarkus.cache.CacheResult;
+import io.quarkus.cache.CaffeineCache;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Read-through cache for session participants and user existence.
+ * Lookups that find nothing throw instead of returning, so misses are never cached
+ * and a session or user created later is seen on the next call.
+ * Size and expiry are configured under {@code quarkus.cache.caffeine}.
+ * A session deleted on another node is evicted here when its deletion event arrives;
+ * a writer that gets in before that finds out from the session row and evicts it.
+ */
+@ApplicationScoped
+public class ParticipantCache {
+
+    public static final String SESSION_PARTICIPANTS = "session-participants";
+    public static final String KNOWN_USERS = "known-users";
+
+    @Inject
+    SessionRepository sessionRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    @CacheName(SESSION_PARTICIPANTS)
+    Cache sessionCache;
+
+    @CacheName(KNOWN_USERS)
+    Cache userCache;
+
+    @CacheResult(cacheName = SESSION_PARTICIPANTS)
+    public SessionParticipants requireSession(UUID sessionId) {
+        Session session = sessionRepository.findById(sessionId);
+        if (session == null) {
+            throw new IllegalArgumentException("Session not found");
+        }
+        return SessionParticipants.of(session);
+    }
+
+    /** Returns the user ID when the user exists */
+    @CacheResult(cacheName = KNOWN_USERS)
+    public UUID requireUser(UUID userId) {
+        if (userRepository.count("id", userId) == 0) {
+            throw new IllegalArgumentException("User not found");
+        }
+        return userId;
+    }
+
+    public boolean userExists(UUID userId) {
+        try {
+            requireUser(userId);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /** Participants of those sessions that exist, loading every cache miss with one query */
+    public Map<UUID, SessionParticipants> findSessions(Collection<UUID> sessionIds) {
+        CaffeineCache cache = sessionCache.as(CaffeineCache.class);
+        Map<UUID, SessionParticipants> found = new HashMap<>();
+        List<UUID> missing = new ArrayList<>();
+        for (UUID sessionId : sessionIds) {
+            SessionParticipants cached = cachedValue(cache, sessionId);
+            if (cached != null) {
+                found.put(sessionId, cached);
+            } else {
+                missing.add(sessionId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (Session session : sessionRepository.list("sessionId in ?1", missing)) {
+                SessionParticipants participants = SessionParticipants.of(session);
+                found.put(session.getSessionId(), participants);
+                cache.put(session.getSessionId(), CompletableFuture.completedFuture(participants));
+            }
+        }
+        return found;
+    }
+
+    /** Those of the given users that exist, loading every cache miss with one query */
+    public Set<UUID> findExistingUsers(Collection<UUID> userIds) {
+        CaffeineCache cache = userCache.as(CaffeineCache.class);
+        Set<UUID> found = new HashSet<>();
+        List<UUID> missing = new ArrayList<>();
+        for (UUID userId : userIds) {
+            if (cachedValue(cache, userId) != null) {
+                found.add(userId);
+            } else {
+                missing.add(userId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (UUID userId : userRepository.findExistingIds(missing)) {
+                found.add(userId);
+                cache.put(userId, CompletableFuture.completedFuture(userId));
+            }
+        }
+        return found;
+    }
+
+    @CacheInvalidate(cacheName = SESSION_PARTICIPANTS)
+    public void evictSession(UUID sessionId) {
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V cachedValue(CaffeineCache cache, UUID key) {
+        CompletableFuture<Object> value = cache.getIfPresent(key);
+        // Entries still being loaded by another caller count as misses
+        if (value == null || !value.isDone() || value.isCompletedExceptionally()) {
+            return null;
+        }
+        return (V) value.join();
+    }
+}
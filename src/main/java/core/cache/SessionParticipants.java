@@ -0,0 +1,60 @@
+package core.cache;
+
+import data.entities.Session;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * The parts of a session that never change after it is created.
+ * Safe to cache for as long as the session exists.
+ */
+public final class SessionParticipants {
+
+    private final UUID sessionId;
+    private final UUID senderId;
+    private final UUID receiverId;
+    private final LocalDateTime creationDate;
+
+    public SessionParticipants(UUID sessionId, UUID senderId, UUID receiverId) {
+        this(sessionId, senderId, receiverId, null);
+    }
+
+    public SessionParticipants(UUID sessionId, UUID senderId, UUID receiverId, LocalDateTime creationDate) {
+        this.sessionId = sessionId;
+        this.senderId = senderId;
+        this.receiverId = receiverId;
+        this.creationDate = creationDate;
+    }
+
+    public static SessionParticipants of(Session session) {
+        return new SessionParticipants(session.getSessionId(), session.getSenderId(), session.getReceiverId(),
+                session.getCreationDate());
+    }
+
+    public UUID getSessionId() {
+        return sessionId;
+    }
+
+    public UUID getSenderId() {
+        return senderId;
+    }
+
+    public UUID getReceiverId() {
+        return receiverId;
+    }
+
+    /** Null when not known */
+    public LocalDateTime getCreationDate() {
+        return creationDate;
+    }
+
+    public boolean hasParticipant(UUID userId) {
+        return senderId.equals(userId) || receiverId.equals(userId);
+    }
+
+    /** The other participant from {@code userId}'s point of view */
+    public UUID counterpartOf(UUID userId) {
+        return senderId.equals(userId) ? receiverId : senderId;
+    }
+}
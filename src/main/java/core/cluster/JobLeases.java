@@ -0,0 +1,53 @@
+package core.cluster;
+
+import data.entities.JobLease;
+import data.repositories.JobLeaseRepository;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.PersistenceException;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Leader election for jobs that every node schedules but only one may run at a time.
+ * A node runs the job while it holds the job's lease, renewing it before each run; when the
+ * holder stops renewing, another node takes over once the lease has expired. The lease has
+ * to outlast a run, and the clocks of the nodes may only drift apart by a fraction of it.
+ */
+@ApplicationScoped
+public class JobLeases {
+
+    private static final Logger LOG = Logger.getLogger(JobLeases.class);
+
+    // Unique per process, so a restarted node does not inherit the lease of its earlier run
+    private final String owner = UUID.randomUUID().toString();
+
+    @Inject
+    JobLeaseRepository leaseRepository;
+
+    /** Takes or renews the lease on {@code job} for {@code duration}; false while another node holds it */
+    public boolean tryAcquire(String job, Duration duration) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime until = now.plus(duration);
+        if (QuarkusTransaction.requiringNew().call(() -> leaseRepository.extend(job, owner, now, until)) > 0) {
+            return true;
+        }
+        try {
+            return QuarkusTransaction.requiringNew().call(() -> {
+                if (leaseRepository.findById(job) != null) {
+                    return false;
+                }
+                leaseRepository.persistAndFlush(new JobLease(job, owner, until));
+                return true;
+            });
+        } catch (PersistenceException e) {
+            // Another node created the lease first
+            LOG.debugf("Lost the race to create the %s lease", job);
+            return false;
+        }
+    }
+}
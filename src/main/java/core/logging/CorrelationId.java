@@ -0,0 +1,46 @@
+package core.logging;
+
+import org.jboss.logging.MDC;
+
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Correlation ID of the work in progress, kept in the logging MDC so every log line
+ * written on its behalf carries it. Set per HTTP request and forwarded to Kafka as a
+ * record header.
+ */
+public final class CorrelationId {
+
+    public static final String HTTP_HEADER = "X-Correlation-ID";
+    public static final String KAFKA_HEADER = "correlation-id";
+    public static final String MDC_KEY = "correlationId";
+    public static final int MAX_LENGTH = 64;
+
+    // Caller supplied values end up in logs and headers, so only plain tokens are accepted
+    private static final Pattern VALID = Pattern.compile("[A-Za-z0-9._-]{1," + MAX_LENGTH + "}");
+
+    private CorrelationId() {}
+
+    /** The current correlation ID, or null outside of a correlated context */
+    public static String current() {
+        Object value = MDC.get(MDC_KEY);
+        return value != null ? value.toString() : null;
+    }
+
+    public static void set(String correlationId) {
+        MDC.put(MDC_KEY, correlationId);
+    }
+
+    public static void clear() {
+        MDC.remove(MDC_KEY);
+    }
+
+    /** The given ID when it is well formed, otherwise a fresh one */
+    public static String sanitizeOrGenerate(String candidate) {
+        if (candidate != null && VALID.matcher(candidate).matches()) {
+            return candidate;
+        }
+        return UUID.randomUUID().toString();
+    }
+}
@@ -26,6 +26,10 @@ public class DTOMapper {
         dto.creationDate = session.getCreationDate();
         dto.senderId = session.getSenderId();
         dto.receiverId = session.getReceiverId();
+        dto.messageCount = session.getMessageCount();
+        dto.lastMessageId = session.getLastMessageId();
+        dto.lastMessagePreview = session.getLastMessagePreview();
+        dto.lastActivity = session.getLastActivity();
 
         if (eagerMessages && session.getMessages() != null) {
             dto.messages = session.getMessages().stream()
@@ -35,4 +39,13 @@ public class DTOMapper {
 
         return dto;
     }
+
+    // Session with messages that were loaded separately, e.g. in one batch for many sessions
+    public static SessionDTO toSessionDTO(Session session, List<Message> messages) {
+        SessionDTO dto = toSessionDTO(session, false);
+        dto.messages = messages.stream()
+                .map(DTOMapper::toMessageDTO)
+                .collect(Collectors.toList());
+        return dto;
+    }
 }
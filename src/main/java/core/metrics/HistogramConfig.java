@@ -0,0 +1,43 @@
+package core.metrics;
+
+import core.outbox.MessageOutbox;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Singleton;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Publishes latency histograms for endpoints, repository queries and Kafka sends, so
+ * percentiles can be aggregated across instances in Prometheus. The bucket range is
+ * bounded to keep the number of series per timer small.
+ */
+@Singleton
+public class HistogramConfig {
+
+    private static final List<String> HISTOGRAM_PREFIXES = List.of(
+            "http.server.requests", MeasuredInterceptor.QUERY_TIMER, MessageOutbox.SEND_TIMER);
+
+    @Produces
+    @Singleton
+    MeterFilter latencyHistograms() {
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if (id.getType() != Meter.Type.TIMER
+                        || HISTOGRAM_PREFIXES.stream().noneMatch(id.getName()::startsWith)) {
+                    return config;
+                }
+                return DistributionStatisticConfig.builder()
+                        .percentilesHistogram(true)
+                        .minimumExpectedValue((double) Duration.ofMillis(1).toNanos())
+                        .maximumExpectedValue((double) Duration.ofSeconds(10).toNanos())
+                        .build()
+                        .merge(config);
+            }
+        };
+    }
+}
@@ -0,0 +1,55 @@
+package core.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.Priority;
+import jakarta.inject.Inject;
+import jakarta.interceptor.AroundInvoke;
+import jakarta.interceptor.Interceptor;
+import jakarta.interceptor.InvocationContext;
+
+import java.util.Collection;
+
+/**
+ * Times repository calls as {@code repository.query}, tagged with the repository, the method
+ * and whether it threw, and records the size of returned lists as {@code repository.query.rows}.
+ * Tags are limited to code identifiers so the number of series stays fixed.
+ */
+@Measured
+@Interceptor
+@Priority(Interceptor.Priority.PLATFORM_BEFORE)
+public class MeasuredInterceptor {
+
+    public static final String QUERY_TIMER = "repository.query";
+    public static final String QUERY_ROWS = "repository.query.rows";
+
+    @Inject
+    MeterRegistry registry;
+
+    @AroundInvoke
+    Object measure(InvocationContext context) throws Exception {
+        String repository = context.getMethod().getDeclaringClass().getSimpleName();
+        String method = context.getMethod().getName();
+        Timer.Sample sample = Timer.start(registry);
+        String outcome = "error";
+        try {
+            Object result = context.proceed();
+            outcome = "success";
+            if (result instanceof Collection<?> rows) {
+                DistributionSummary.builder(QUERY_ROWS)
+                        .tag("repository", repository)
+                        .tag("method", method)
+                        .register(registry)
+                        .record(rows.size());
+            }
+            return result;
+        } finally {
+            sample.stop(Timer.builder(QUERY_TIMER)
+                    .tag("repository", repository)
+                    .tag("method", method)
+                    .tag("outcome", outcome)
+                    .register(registry));
+        }
+    }
+}
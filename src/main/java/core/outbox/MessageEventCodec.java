@@ -0,0 +1,83 @@
+package core.outbox;
+
+import api.dto.MessageCreatedEvent;
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Compact binary form of {@link MessageCreatedEvent}: a format version byte, the four IDs as
+ * 16 bytes each, the timestamp, the session sequence number (since version 2), and the
+ * content as length-prefixed UTF-8 (length -1 for none).
+ * JSON events start with '{', which is never a version, so both forms can share the topic.
+ * A new layout gets a new version and {@link #decode} keeps reading the old ones.
+ */
+public final class MessageEventCodec {
+
+    public static final byte VERSION_1 = 1;
+    public static final byte VERSION_2 = 2;
+
+    private static final int FIXED_SIZE = 1 + 4 * 16 + 8 + 8 + 4;
+
+    private MessageEventCodec() {
+    }
+
+    public static boolean isBinary(byte[] data) {
+        return data.length > 0 && data[0] != '{';
+    }
+
+    public static byte[] encode(MessageCreatedEvent event) {
+        byte[] content = event.content != null ? event.content.getBytes(StandardCharsets.UTF_8) : null;
+        ByteBuffer buffer = ByteBuffer.allocate(FIXED_SIZE + (content != null ? content.length : 0));
+        buffer.put(VERSION_2);
+        putUuid(buffer, event.messageId);
+        putUuid(buffer, event.sessionId);
+        putUuid(buffer, event.senderId);
+        putUuid(buffer, event.receiverId);
+        buffer.putLong(event.timestamp);
+        buffer.putLong(event.sequence);
+        if (content != null) {
+            buffer.putInt(content.length).put(content);
+        } else {
+            buffer.putInt(-1);
+        }
+        return buffer.array();
+    }
+
+    public static MessageCreatedEvent decode(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        byte version = buffer.get();
+        if (version != VERSION_1 && version != VERSION_2) {
+            throw new SerializationException("Unsupported message event version " + version);
+        }
+        try {
+            MessageCreatedEvent event = new MessageCreatedEvent();
+            event.messageId = getUuid(buffer);
+            event.sessionId = getUuid(buffer);
+            event.senderId = getUuid(buffer);
+            event.receiverId = getUuid(buffer);
+            event.timestamp = buffer.getLong();
+            if (version >= VERSION_2) {
+                event.sequence = buffer.getLong();
+            }
+            int length = buffer.getInt();
+            if (length >= 0) {
+                event.content = new String(data, buffer.position(), length, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + length);
+            }
+            return event;
+        } catch (RuntimeException e) {
+            throw new SerializationException("Truncated message event of " + data.length + " bytes", e);
+        }
+    }
+
+    private static void putUuid(ByteBuffer buffer, UUID id) {
+        buffer.putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+    }
+
+    private static UUID getUuid(ByteBuffer buffer) {
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
@@ -0,0 +1,13 @@
+package core.outbox;
+
+import api.dto.MessageCreatedEvent;
+import org.apache.kafka.common.serialization.Serializer;
+
+/** Writes message events in the binary form of {@link MessageEventCodec} */
+public class MessageEventSerializer implements Serializer<MessageCreatedEvent> {
+
+    @Override
+    public byte[] serialize(String topic, MessageCreatedEvent event) {
+        return event != null ? MessageEventCodec.encode(event) : null;
+    }
+}
@@ -0,0 +1,334 @@
+package core.outbox;
+
+import api.dto.MessageCreatedEvent;
+import api.dto.MessageDeletedEvent;
+import api.dto.SessionDeletedEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import core.cluster.JobLeases;
+import core.logging.CorrelationId;
+import data.entities.OutboxEvent;
+import data.repositories.OutboxRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.reactive.messaging.kafka.api.OutgoingKafkaRecordMetadata;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.reactive.messaging.Channel;
+import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.jboss.logging.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Transactional outbox for message events.
+ * Events are stored in the transaction that creates the message, so an event exists
+ * exactly when its message does. A scheduled relay sends pending events to the
+ * {@code message-events-out} channel in batches and deletes them once Kafka has
+ * acknowledged them. Delivery is at least once: an event whose acknowledgement was
+ * lost is sent again, so consumers must tolerate duplicates by message ID.
+ * Failed sends are retried with an exponential backoff; an event that fails
+ * {@code message-outbox.max-attempts} times is parked, counted and logged, and stays in the
+ * table until an operator clears its parked_at.
+ * <p>
+ * Events are keyed by session ID and carry the session's sequence number. Only the node
+ * holding the relay lease relays, and it sends a session's events in sequence order and
+ * never past one that has not been delivered: the rest of the session waits for its retry.
+ * Events sent ahead of one that failed are sent again after it, so a consumer that needs
+ * order applies a session's events by sequence number: it drops numbers it has applied,
+ * and holds an event that arrives after a gap until the gap is filled. A parked event
+ * leaves a gap that only an operator fills, so such a consumer should also give up waiting
+ * after a while.
+ * <p>
+ * Deletions of messages and sessions go through the outbox too, to the
+ * {@code message-deletions-out} and {@code session-deletions-out} channels, so that every
+ * node can drop them from its search index. They take the session's sequence number at the
+ * time of the deletion, which orders them after the session's earlier events; on their own
+ * topics that number is only an ordering hint, not a position without gaps.
+ */
+@ApplicationScoped
+public class MessageOutbox {
+
+    private static final Logger LOG = Logger.getLogger(MessageOutbox.class);
+
+    public static final String MESSAGE_CREATED = "MessageCreated";
+    public static final String MESSAGE_DELETED = "MessageDeleted";
+    public static final String SESSION_DELETED = "SessionDeleted";
+    public static final String SEND_TIMER = "message.outbox.send";
+    public static final String PARKED_COUNTER = "message.outbox.parked";
+    public static final String RELAY_LEASE = "message-outbox-relay";
+
+    private static final Comparator<OutboxEvent> IN_SEQUENCE =
+            Comparator.comparingLong(OutboxEvent::getSequence).thenComparing(OutboxEvent::getEventId);
+
+    @Inject
+    OutboxRepository outboxRepository;
+
+    @Inject
+    JobLeases jobLeases;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    @Channel("message-events-out")
+    Emitter<MessageCreatedEvent> emitter;
+
+    @Inject
+    @Channel("message-deletions-out")
+    Emitter<MessageDeletedEvent> messageDeletedEmitter;
+
+    @Inject
+    @Channel("session-deletions-out")
+    Emitter<SessionDeletedEvent> sessionDeletedEmitter;
+
+    @ConfigProperty(name = "message-outbox.batch-size", defaultValue = "100")
+    int batchSize;
+
+    @ConfigProperty(name = "message-outbox.send-timeout", defaultValue = "10s")
+    Duration sendTimeout;
+
+    @ConfigProperty(name = "message-outbox.max-attempts", defaultValue = "10")
+    int maxAttempts;
+
+    @ConfigProperty(name = "message-outbox.retry-backoff", defaultValue = "1s")
+    Duration retryBackoff;
+
+    @ConfigProperty(name = "message-outbox.max-retry-backoff", defaultValue = "5m")
+    Duration maxRetryBackoff;
+
+    @ConfigProperty(name = "message-outbox.relay-lease", defaultValue = "30s")
+    Duration relayLease;
+
+    /** Stores the event in the caller's transaction */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void enqueue(MessageCreatedEvent event) {
+        outboxRepository.persist(new OutboxEvent(MESSAGE_CREATED, event.sessionId, event.sequence, toJson(event),
+                CorrelationId.current()));
+    }
+
+    /** Stores the event in the caller's transaction; {@code sequence} is the session's current one */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void enqueue(MessageDeletedEvent event, long sequence) {
+        outboxRepository.persist(new OutboxEvent(MESSAGE_DELETED, event.sessionId, sequence, toJson(event),
+                CorrelationId.current()));
+    }
+
+    /** Stores the event in the caller's transaction; {@code sequence} is the session's current one */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void enqueue(SessionDeletedEvent event, long sequence) {
+        outboxRepository.persist(new OutboxEvent(SESSION_DELETED, event.sessionId, sequence, toJson(event),
+                CorrelationId.current()));
+    }
+
+    /**
+     * Drains the outbox. Runs every {@code message-outbox.linger}, which bounds how long
+     * an event waits before it is picked up, and keeps going while full batches are found.
+     * Every node schedules it, but only the holder of the relay lease relays, renewing the
+     * lease before each batch; another node takes over once a holder stops renewing.
+     */
+    @Scheduled(every = "${message-outbox.linger:200ms}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void relayPending() {
+        int delivered;
+        do {
+            if (!jobLeases.tryAcquire(RELAY_LEASE, relayLease)) {
+                return;
+            }
+            delivered = relayBatch();
+        } while (delivered == batchSize);
+    }
+
+    /**
+     * Sends one batch of the oldest due events and returns how many were delivered.
+     * The batch is claimed in a transaction of its own that commits before the sends, so no
+     * row lock or connection is held while Kafka acknowledges. A claim lasts twice the send
+     * timeout; the events of a relay that dies on the way are picked up again after that.
+     * Sessions with an earlier event still pending elsewhere are left out, and within the
+     * batch a session stops at its first failure.
+     */
+    public int relayBatch() {
+        LocalDateTime claimedAt = LocalDateTime.now();
+        List<OutboxEvent> batch = QuarkusTransaction.requiringNew().call(() -> {
+            List<UUID> blocked = outboxRepository.findBlockedSessionIds(claimedAt);
+            List<OutboxEvent> due = outboxRepository.lockDue(claimedAt, blocked, batchSize);
+            if (due.isEmpty()) {
+                return due;
+            }
+            // An earlier event of a session may still be pending outside the batch, when the
+            // batch ends between the two; the session's events in the batch wait for it
+            Map<UUID, Long> earliestPending = outboxRepository.findEarliestPendingSequences(
+                    due.stream().map(OutboxEvent::getSessionId).collect(Collectors.toSet()),
+                    due.stream().map(OutboxEvent::getEventId).toList());
+            List<OutboxEvent> sendable = due.stream()
+                    .filter(event -> {
+                        // Events from before sequence numbers all have 0 and go in ID order
+                        Long earliest = earliestPending.get(event.getSessionId());
+                        return earliest == null || event.getSequence() <= earliest;
+                    })
+                    .sorted(IN_SEQUENCE)
+                    .toList();
+            if (!sendable.isEmpty()) {
+                outboxRepository.scheduleAt(sendable.stream().map(OutboxEvent::getEventId).toList(),
+                        claimedAt.plus(sendTimeout.multipliedBy(2)));
+            }
+            return sendable;
+        });
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        // Everything is handed to the producer before waiting, so it can batch the sends,
+        // except the events of a session after one that could not even be handed over
+        List<CompletableFuture<Void>> acks = new ArrayList<>(batch.size());
+        Set<UUID> stopped = new HashSet<>();
+        for (OutboxEvent event : batch) {
+            if (stopped.contains(event.getSessionId())) {
+                acks.add(null);
+                continue;
+            }
+            CompletableFuture<Void> ack = send(event);
+            if (ack.isCompletedExceptionally()) {
+                stopped.add(event.getSessionId());
+            }
+            acks.add(ack);
+        }
+
+        long deadline = System.nanoTime() + sendTimeout.toNanos();
+        List<UUID> delivered = new ArrayList<>(batch.size());
+        Map<UUID, String> failed = new LinkedHashMap<>();
+        // Behind a failure in their session: handed back uncounted, to be sent again after it
+        List<UUID> heldBack = new ArrayList<>();
+        Set<UUID> failedSessions = new HashSet<>();
+        for (int i = 0; i < batch.size(); i++) {
+            OutboxEvent event = batch.get(i);
+            UUID eventId = event.getEventId();
+            if (failedSessions.contains(event.getSessionId())) {
+                heldBack.add(eventId);
+                continue;
+            }
+            try {
+                acks.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                delivered.add(eventId);
+            } catch (ExecutionException e) {
+                failed.put(eventId, String.valueOf(e.getCause()));
+            } catch (TimeoutException e) {
+                failed.put(eventId, "Not acknowledged within " + sendTimeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.put(eventId, "Interrupted while waiting for acknowledgement");
+            }
+            if (failed.containsKey(eventId)) {
+                failedSessions.add(event.getSessionId());
+            }
+        }
+
+        QuarkusTransaction.requiringNew().run(() -> {
+            if (!delivered.isEmpty()) {
+                outboxRepository.deleteByIds(delivered);
+            }
+            LocalDateTime failedAt = LocalDateTime.now();
+            if (!heldBack.isEmpty()) {
+                outboxRepository.scheduleAt(heldBack, failedAt);
+            }
+            for (Map.Entry<UUID, String> failure : failed.entrySet()) {
+                OutboxEvent event = outboxRepository.findById(failure.getKey());
+                if (event == null) {
+                    // Delivered by another relay after this claim ran out
+                    continue;
+                }
+                event.recordFailure(failure.getValue());
+                if (event.getAttempts() >= maxAttempts) {
+                    event.park(failedAt);
+                    registry.counter(PARKED_COUNTER).increment();
+                    LOG.errorf("Outbox event %s failed %d times and was parked: %s",
+                            event.getEventId(), event.getAttempts(), event.getLastError());
+                } else {
+                    event.retryAt(failedAt.plus(backoff(event.getAttempts())));
+                }
+            }
+        });
+        if (!failed.isEmpty()) {
+            LOG.warnf("%d of %d outbox events were not delivered and will be retried after a backoff, %d more behind them",
+                    failed.size(), batch.size(), heldBack.size());
+        }
+        return delivered.size();
+    }
+
+    /** Doubles with every attempt, from message-outbox.retry-backoff up to message-outbox.max-retry-backoff */
+    private Duration backoff(int attempts) {
+        Duration backoff = retryBackoff.multipliedBy(1L << Math.min(attempts - 1, 30));
+        return backoff.compareTo(maxRetryBackoff) > 0 ? maxRetryBackoff : backoff;
+    }
+
+    private CompletableFuture<Void> send(OutboxEvent event) {
+        CompletableFuture<Void> ack = new CompletableFuture<>();
+        Timer.Sample sample = Timer.start(registry);
+        // Recorded when Kafka answers, so sends that outlive the timeout still show up late
+        ack.whenComplete((ignored, failure) ->
+                sample.stop(registry.timer(SEND_TIMER, "outcome", failure == null ? "success" : "failure")));
+        try {
+            switch (event.getEventType()) {
+                case MESSAGE_CREATED -> emit(emitter, objectMapper.readValue(event.getPayload(), MessageCreatedEvent.class), event, ack);
+                case MESSAGE_DELETED -> emit(messageDeletedEmitter, objectMapper.readValue(event.getPayload(), MessageDeletedEvent.class), event, ack);
+                case SESSION_DELETED -> emit(sessionDeletedEmitter, objectMapper.readValue(event.getPayload(), SessionDeletedEvent.class), event, ack);
+                default -> throw new IllegalStateException("Unknown outbox event type " + event.getEventType());
+            }
+        } catch (JsonProcessingException | RuntimeException e) {
+            // e.g. the emitter buffer is full while Kafka is unreachable
+            ack.completeExceptionally(e);
+        }
+        return ack;
+    }
+
+    private <T> void emit(Emitter<T> channel, T payload, OutboxEvent event, CompletableFuture<Void> ack) {
+        Message<T> message = Message.of(payload)
+                .withAck(() -> {
+                    ack.complete(null);
+                    return CompletableFuture.completedFuture(null);
+                })
+                .withNack(failure -> {
+                    ack.completeExceptionally(failure);
+                    return CompletableFuture.completedFuture(null);
+                });
+        // Keyed by session, so each session's events stay on one partition and in order
+        OutgoingKafkaRecordMetadata.OutgoingKafkaRecordMetadataBuilder<String> metadata =
+                OutgoingKafkaRecordMetadata.<String>builder().withKey(event.getSessionId().toString());
+        if (event.getCorrelationId() != null) {
+            metadata.withHeaders(new RecordHeaders().add(CorrelationId.KAFKA_HEADER,
+                    event.getCorrelationId().getBytes(StandardCharsets.UTF_8)));
+        }
+        channel.send(message.addMetadata(metadata.build()));
+    }
+
+    private String toJson(Object event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize " + event.getClass().getSimpleName(), e);
+        }
+    }
+}
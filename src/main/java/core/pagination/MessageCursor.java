@@ -0,0 +1,58 @@
+package core.pagination;
+
+import api.dto.MessageDTO;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Opaque keyset position inside a session's message history.
+ * A cursor points at one message by its (dateTime, messageId) pair, so it stays
+ * valid when new messages are inserted before or after it.
+ */
+public final class MessageCursor {
+
+    private static final String VERSION = "v1";
+    private static final String SEPARATOR = "|";
+
+    private final LocalDateTime dateTime;
+    private final UUID messageId;
+
+    public MessageCursor(LocalDateTime dateTime, UUID messageId) {
+        this.dateTime = dateTime;
+        this.messageId = messageId;
+    }
+
+    public static MessageCursor of(MessageDTO message) {
+        return new MessageCursor(message.dateTime, message.messageId);
+    }
+
+    public LocalDateTime getDateTime() {
+        return dateTime;
+    }
+
+    public UUID getMessageId() {
+        return messageId;
+    }
+
+    public String encode() {
+        String raw = VERSION + SEPARATOR + dateTime + SEPARATOR + messageId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static MessageCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\" + SEPARATOR);
+            if (parts.length != 3 || !VERSION.equals(parts[0])) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new MessageCursor(LocalDateTime.parse(parts[1]), UUID.fromString(parts[2]));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package core.push;
+
+import api.dto.MessageCreatedEvent;
+import core.outbox.MessageEventCodec;
+import io.quarkus.kafka.client.serialization.ObjectMapperDeserializer;
+
+/** Reads message events in either JSON or the binary form of {@link MessageEventCodec} */
+public class MessageCreatedEventDeserializer extends ObjectMapperDeserializer<MessageCreatedEvent> {
+
+    public MessageCreatedEventDeserializer() {
+        super(MessageCreatedEvent.class);
+    }
+
+    @Override
+    public MessageCreatedEvent deserialize(String topic, byte[] data) {
+        if (data != null && MessageEventCodec.isBinary(data)) {
+            return MessageEventCodec.decode(data);
+        }
+        return super.deserialize(topic, data);
+    }
+}
@@ -0,0 +1,119 @@
+package core.push;
+
+import api.dto.MessageCreatedEvent;
+import api.dto.MessageDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.subscription.BackPressureFailure;
+import io.smallrye.mutiny.subscription.BackPressureStrategy;
+import io.smallrye.mutiny.subscription.MultiEmitter;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connected clients on this node, by user, and the fan-out of new messages to them.
+ * Messages arrive twice on the node that stored them: right after commit, and again from
+ * Kafka, which is how every other node learns about them. The first copy is pushed to the
+ * sender's and the receiver's subscriptions and later copies are dropped by message ID.
+ * Pushing only enqueues: each subscription buffers up to {@code message-push.buffer-size}
+ * messages, and a client that falls that far behind is disconnected rather than slowing
+ * anyone down. Clients catch up after reconnecting through the message page endpoint with
+ * an {@code after} cursor.
+ */
+@ApplicationScoped
+public class MessagePushRegistry {
+
+    private static final Logger LOG = Logger.getLogger(MessagePushRegistry.class);
+
+    public static final String SUBSCRIBERS_GAUGE = "message.push.subscribers";
+    public static final String DUPLICATES_COUNTER = "message.push.duplicates";
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "message-push.buffer-size", defaultValue = "256")
+    int bufferSize;
+
+    @ConfigProperty(name = "message-push.dedupe-window", defaultValue = "10000")
+    int dedupeWindow;
+
+    private final ConcurrentMap<UUID, Set<MultiEmitter<? super MessageDTO>>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger connected = new AtomicInteger();
+    private RecentIds delivered;
+    private Counter disconnectedSlow;
+    private Counter duplicates;
+
+    @PostConstruct
+    void init() {
+        delivered = new RecentIds(dedupeWindow);
+        registry.gauge(SUBSCRIBERS_GAUGE, connected);
+        disconnectedSlow = registry.counter("message.push.slow.disconnects");
+        duplicates = registry.counter(DUPLICATES_COUNTER);
+    }
+
+    /** New messages in any of the user's sessions, from now on, until the subscriber cancels */
+    public Multi<MessageDTO> subscribe(UUID userId) {
+        return Multi.createFrom().<MessageDTO>emitter(emitter -> {
+                    subscribers.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(emitter);
+                    connected.incrementAndGet();
+                    emitter.onTermination(() -> unsubscribe(userId, emitter));
+                }, BackPressureStrategy.BUFFER)
+                .onOverflow().buffer(bufferSize)
+                .onFailure(BackPressureFailure.class).invoke(() -> {
+                    disconnectedSlow.increment();
+                    LOG.debugf("Disconnected slow push subscriber for user %s", userId);
+                });
+    }
+
+    void onMessageCreated(@Observes(during = TransactionPhase.AFTER_SUCCESS) MessageCreatedEvent event) {
+        deliver(event);
+    }
+
+    /** Pushes the message to its participants on this node unless it was pushed already */
+    public void deliver(MessageCreatedEvent event) {
+        if (!delivered.add(event.messageId)) {
+            duplicates.increment();
+            return;
+        }
+        MessageDTO message = new MessageDTO(event.messageId, event.sessionId, event.senderId, event.content,
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(event.timestamp), ZoneId.systemDefault()));
+        push(event.receiverId, message);
+        if (!event.senderId.equals(event.receiverId)) {
+            push(event.senderId, message);
+        }
+    }
+
+    private void push(UUID userId, MessageDTO message) {
+        Set<MultiEmitter<? super MessageDTO>> emitters = subscribers.get(userId);
+        if (emitters == null) {
+            return;
+        }
+        for (MultiEmitter<? super MessageDTO> emitter : emitters) {
+            emitter.emit(message);
+        }
+    }
+
+    private void unsubscribe(UUID userId, MultiEmitter<? super MessageDTO> emitter) {
+        subscribers.computeIfPresent(userId, (id, emitters) -> {
+            if (emitters.remove(emitter)) {
+                connected.decrementAndGet();
+            }
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+}
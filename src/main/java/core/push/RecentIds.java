@@ -0,0 +1,28 @@
+package core.push;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The most recently seen IDs, up to a fixed number, for dropping duplicate deliveries.
+ * Duplicates only arrive shortly after the original, so a bounded window is enough.
+ */
+final class RecentIds {
+
+    private final Map<UUID, Boolean> ids;
+
+    RecentIds(int capacity) {
+        this.ids = new LinkedHashMap<>(capacity * 4 / 3 + 1) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Boolean> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /** Records the ID and returns whether it was new */
+    synchronized boolean add(UUID id) {
+        return ids.putIfAbsent(id, Boolean.TRUE) == null;
+    }
+}
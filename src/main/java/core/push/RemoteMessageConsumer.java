@@ -0,0 +1,44 @@
+package core.push;
+
+import api.dto.MessageCreatedEvent;
+import core.search.MessageSearchIndex;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.smallrye.common.annotation.Blocking;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.reactive.messaging.Incoming;
+
+import java.time.Duration;
+
+/**
+ * Feeds message events from Kafka into this node's push subscriptions and search index, so
+ * a recipient connected here hears about messages stored by any node, and finds them.
+ * Every node consumes the whole topic in its own consumer group, which starts from the
+ * latest offset: the index catches up on older messages from the database at startup.
+ * The node's own events come back too; pushing them is deduplicated and indexing them
+ * again changes nothing.
+ */
+@ApplicationScoped
+public class RemoteMessageConsumer {
+
+    public static final String DELAY_TIMER = "message.push.remote.delay";
+
+    @Inject
+    MessagePushRegistry pushRegistry;
+
+    @Inject
+    MessageSearchIndex searchIndex;
+
+    @Inject
+    MeterRegistry registry;
+
+    // Index writes may flush to disk, so not on the event loop
+    @Incoming("message-events-in")
+    @Blocking
+    public void onMessageEvent(MessageCreatedEvent event) {
+        // How long after creation the event reached this node, including the outbox linger
+        registry.timer(DELAY_TIMER).record(Duration.ofMillis(Math.max(0, System.currentTimeMillis() - event.timestamp)));
+        pushRegistry.deliver(event);
+        searchIndex.index(event);
+    }
+}
@@ -0,0 +1,61 @@
+package core.routing;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.vertx.http.runtime.CurrentVertxRequest;
+import io.vertx.core.http.Cookie;
+import io.vertx.ext.web.RoutingContext;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+
+/**
+ * Decides which database serves a read. Reads outside a transaction go to the replica;
+ * transactions, and so every write, stay on the primary. A client that has just written
+ * keeps reading from the primary for the read-your-writes window, which should be longer
+ * than the replica lag, so it always sees its own writes. The time of its last write travels
+ * with the client in the {@value #LAST_WRITE_COOKIE} cookie, so any node can tell.
+ */
+@ApplicationScoped
+public class ReadRouting {
+
+    public static final String LAST_WRITE_COOKIE = "last-write";
+
+    @ConfigProperty(name = "replica-routing.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "replica-routing.read-your-writes-window", defaultValue = "5s")
+    Duration window;
+
+    @Inject
+    CurrentVertxRequest currentRequest;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** How long after a write its author keeps reading from the primary */
+    public Duration getWindow() {
+        return window;
+    }
+
+    public boolean useReplica() {
+        if (!enabled || QuarkusTransaction.isActive()) {
+            return false;
+        }
+        RoutingContext request = currentRequest.getCurrent();
+        Cookie lastWrite = request != null ? request.request().getCookie(LAST_WRITE_COOKIE) : null;
+        return lastWrite == null || !isRecent(lastWrite.getValue());
+    }
+
+    // The write time comes from the clock of the node that took the write, so the window
+    // also has to cover the clock skew between nodes
+    private boolean isRecent(String lastWriteMillis) {
+        try {
+            return System.currentTimeMillis() - Long.parseLong(lastWriteMillis) < window.toMillis();
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
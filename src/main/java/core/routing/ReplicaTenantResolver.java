@@ -0,0 +1,55 @@
+package core.routing;
+
+import io.agroal.api.AgroalDataSource;
+import io.quarkus.agroal.DataSource;
+import io.quarkus.hibernate.orm.PersistenceUnitExtension;
+import io.quarkus.hibernate.orm.runtime.customized.QuarkusConnectionProvider;
+import io.quarkus.hibernate.orm.runtime.tenant.TenantConnectionResolver;
+import io.quarkus.hibernate.orm.runtime.tenant.TenantResolver;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+
+/**
+ * Routes Hibernate sessions between the default datasource and the {@value #REPLICA}
+ * datasource, as the two tenants of the database multitenancy strategy. A session keeps
+ * the datasource it was opened with: a transaction opens its own session on the primary,
+ * and reads outside a transaction share a request-scoped one that {@link ReadRouting} places.
+ */
+@PersistenceUnitExtension
+@ApplicationScoped
+public class ReplicaTenantResolver implements TenantResolver, TenantConnectionResolver {
+
+    public static final String PRIMARY = "primary";
+    public static final String REPLICA = "replica";
+
+    @Inject
+    ReadRouting readRouting;
+
+    @Inject
+    AgroalDataSource primary;
+
+    @Inject
+    @DataSource(REPLICA)
+    AgroalDataSource replica;
+
+    @Override
+    public String getDefaultTenantId() {
+        return PRIMARY;
+    }
+
+    @Override
+    public String resolveTenantId() {
+        return readRouting.useReplica() ? REPLICA : PRIMARY;
+    }
+
+    // Hibernate asks once per tenant and keeps the provider
+    @Override
+    public ConnectionProvider resolve(String tenantId) {
+        return switch (tenantId) {
+            case PRIMARY -> new QuarkusConnectionProvider(primary);
+            case REPLICA -> new QuarkusConnectionProvider(replica);
+            default -> throw new IllegalStateException("Unknown datasource " + tenantId);
+        };
+    }
+}
@@ -0,0 +1,11 @@
+package core.search;
+
+import api.dto.MessageDeletedEvent;
+import io.quarkus.kafka.client.serialization.ObjectMapperDeserializer;
+
+public class MessageDeletedEventDeserializer extends ObjectMapperDeserializer<MessageDeletedEvent> {
+
+    public MessageDeletedEventDeserializer() {
+        super(MessageDeletedEvent.class);
+    }
+}
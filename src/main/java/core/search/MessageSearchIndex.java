@@ -0,0 +1,312 @@
+package core.search;
+
+import api.dto.MessageCreatedEvent;
+import api.dto.MessageDeletedEvent;
+import api.dto.SessionDeletedEvent;
+import data.entities.Message;
+import data.entities.Session;
+import data.repositories.MessageRepository;
+import io.quarkus.arc.Arc;
+import io.quarkus.arc.ManagedContext;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.QueryBuilder;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Embedded Lucene inverted index over message content.
+ * Documents are keyed by message ID and carry the session participants so that a
+ * search can be scoped to the sessions a user takes part in. The index is updated
+ * after the creating or deleting transaction commits, and searches see the change within
+ * {@code message-search.refresh-interval}. Every node keeps an index of its own, and
+ * applies the changes made on other nodes as their events arrive from Kafka, see
+ * {@link core.push.RemoteMessageConsumer} and {@link RemoteDeletionConsumer}.
+ */
+@ApplicationScoped
+public class MessageSearchIndex {
+
+    private static final Logger LOG = Logger.getLogger(MessageSearchIndex.class);
+
+    static final String FIELD_MESSAGE_ID = "messageId";
+    static final String FIELD_SESSION_ID = "sessionId";
+    static final String FIELD_PARTICIPANT = "participant";
+    static final String FIELD_CONTENT = "content";
+    private static final String COMMIT_INDEXED_UNTIL = "indexedUntil";
+
+    // Messages committed shortly before a crash may carry an older timestamp than the last commit
+    private static final long CATCH_UP_MARGIN_MINUTES = 5;
+
+    @Inject
+    MessageRepository messageRepository;
+
+    @ConfigProperty(name = "message-search.index-path")
+    Optional<String> indexPath;
+
+    @ConfigProperty(name = "message-search.rebuild-batch-size", defaultValue = "1000")
+    int rebuildBatchSize;
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private final AtomicReference<LocalDateTime> indexedUntil = new AtomicReference<>();
+    private Directory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+
+    void onStart(@Observes StartupEvent event) throws IOException {
+        directory = indexPath.isPresent()
+                ? FSDirectory.open(Paths.get(indexPath.get()))
+                : new ByteBuffersDirectory();
+        writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        searcherManager = new SearcherManager(writer, null);
+
+        LocalDateTime committed = lastCommittedPosition();
+        LocalDateTime from = committed != null ? committed.minusMinutes(CATCH_UP_MARGIN_MINUTES) : null;
+        // A full rebuild can take a while on a large history, so it must not hold up startup
+        Thread.ofVirtual().name("message-index-catch-up").start(() -> {
+            ManagedContext requestContext = Arc.container().requestContext();
+            requestContext.activate();
+            try {
+                catchUp(from);
+            } catch (RuntimeException e) {
+                LOG.error("Failed to catch up message search index", e);
+            } finally {
+                requestContext.terminate();
+            }
+        });
+    }
+
+    @PreDestroy
+    void close() {
+        try {
+            if (searcherManager != null) {
+                searcherManager.close();
+            }
+            if (writer != null) {
+                commit();
+                writer.close();
+            }
+            if (directory != null) {
+                directory.close();
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to close message search index", e);
+        }
+    }
+
+    void onMessageCreated(@Observes(during = TransactionPhase.AFTER_SUCCESS) MessageCreatedEvent event) {
+        index(event);
+    }
+
+    void onMessageDeleted(@Observes(during = TransactionPhase.AFTER_SUCCESS) MessageDeletedEvent event) {
+        remove(event.messageId);
+    }
+
+    void onSessionDeleted(@Observes(during = TransactionPhase.AFTER_SUCCESS) SessionDeletedEvent event) {
+        removeSession(event.sessionId);
+    }
+
+    /**
+     * Ranked message IDs matching all terms of the query, best match first.
+     * When {@code userId} is given only sessions that user takes part in are searched.
+     */
+    public List<UUID> search(String text, UUID userId, int pageIndex, int pageSize) {
+        Query contentQuery = new QueryBuilder(analyzer).createBooleanQuery(FIELD_CONTENT, text, BooleanClause.Occur.MUST);
+        if (contentQuery == null) {
+            return List.of();
+        }
+        BooleanQuery.Builder query = new BooleanQuery.Builder()
+                .add(contentQuery, BooleanClause.Occur.MUST);
+        if (userId != null) {
+            query.add(new TermQuery(new Term(FIELD_PARTICIPANT, userId.toString())), BooleanClause.Occur.FILTER);
+        }
+
+        IndexSearcher searcher = null;
+        try {
+            searcher = searcherManager.acquire();
+            int offset = pageIndex * pageSize;
+            TopDocs topDocs = searcher.search(query.build(), offset + pageSize);
+            List<UUID> ids = new ArrayList<>(pageSize);
+            ScoreDoc[] hits = topDocs.scoreDocs;
+            for (int i = offset; i < hits.length; i++) {
+                Document doc = searcher.storedFields().document(hits[i].doc, Set.of(FIELD_MESSAGE_ID));
+                ids.add(UUID.fromString(doc.get(FIELD_MESSAGE_ID)));
+            }
+            return ids;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Message search failed", e);
+        } finally {
+            if (searcher != null) {
+                release(searcher);
+            }
+        }
+    }
+
+    public void index(UUID messageId, UUID sessionId, Collection<UUID> participants, String content, LocalDateTime dateTime) {
+        Document doc = new Document();
+        doc.add(new StringField(FIELD_MESSAGE_ID, messageId.toString(), Field.Store.YES));
+        doc.add(new StringField(FIELD_SESSION_ID, sessionId.toString(), Field.Store.NO));
+        for (UUID participant : participants) {
+            doc.add(new StringField(FIELD_PARTICIPANT, participant.toString(), Field.Store.NO));
+        }
+        doc.add(new TextField(FIELD_CONTENT, content, Field.Store.NO));
+        try {
+            writer.updateDocument(new Term(FIELD_MESSAGE_ID, messageId.toString()), doc);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to index message " + messageId, e);
+        }
+        if (dateTime != null) {
+            indexedUntil.accumulateAndGet(dateTime, (a, b) -> a == null || b.isAfter(a) ? b : a);
+        }
+    }
+
+    /** Indexes the message of the event; indexing a message again replaces it */
+    public void index(MessageCreatedEvent event) {
+        LocalDateTime dateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(event.timestamp), ZoneId.systemDefault());
+        index(event.messageId, event.sessionId, List.of(event.senderId, event.receiverId), event.content, dateTime);
+    }
+
+    public void remove(UUID messageId) {
+        try {
+            writer.deleteDocuments(new Term(FIELD_MESSAGE_ID, messageId.toString()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to remove message " + messageId + " from index", e);
+        }
+    }
+
+    public void removeSession(UUID sessionId) {
+        try {
+            writer.deleteDocuments(new Term(FIELD_SESSION_ID, sessionId.toString()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to remove session " + sessionId + " from index", e);
+        }
+    }
+
+    /**
+     * Makes recent index changes visible to searches. Reopening the reader per change would
+     * cost every write a reopen and a tiny segment, so changes become searchable on this
+     * schedule instead; reopening with nothing changed is cheap.
+     */
+    @Scheduled(every = "${message-search.refresh-interval:1s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    public void refresh() {
+        if (searcherManager == null) {
+            return;
+        }
+        try {
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            LOG.warn("Failed to refresh message search index", e);
+        }
+    }
+
+    /** Flushes index changes to disk, recording how far the message history has been indexed */
+    @Scheduled(every = "${message-search.commit-interval:10s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void commit() {
+        if (writer == null || !writer.hasUncommittedChanges()) {
+            return;
+        }
+        LocalDateTime until = indexedUntil.get();
+        if (until != null) {
+            writer.setLiveCommitData(Map.of(COMMIT_INDEXED_UNTIL, until.toString()).entrySet());
+        }
+        try {
+            writer.commit();
+        } catch (IOException e) {
+            LOG.warn("Failed to commit message search index", e);
+        }
+    }
+
+    /** Indexes every message from the given position onwards, or the whole history when it is null */
+    private void catchUp(LocalDateTime from) {
+        long indexed = 0;
+        LocalDateTime fromDateTime = from;
+        UUID afterMessageId = new UUID(0L, 0L);
+        while (true) {
+            LocalDateTime batchFrom = fromDateTime;
+            UUID batchAfter = afterMessageId;
+            List<Message> batch = QuarkusTransaction.requiringNew().call(() -> {
+                List<Message> messages = messageRepository.findIndexBatchWithRelations(batchFrom, batchAfter, rebuildBatchSize);
+                for (Message message : messages) {
+                    Session session = message.getSessionEntity();
+                    index(message.getMessageId(), message.getSessionId(),
+                            List.of(session.getSenderId(), session.getReceiverId()),
+                            message.getMessage(), message.getDateTime());
+                }
+                return messages;
+            });
+            indexed += batch.size();
+            if (batch.size() < rebuildBatchSize) {
+                break;
+            }
+            Message last = batch.get(batch.size() - 1);
+            fromDateTime = last.getDateTime();
+            afterMessageId = last.getMessageId();
+        }
+        refresh();
+        commit();
+        if (indexed > 0) {
+            LOG.infof("Indexed %d messages for search", indexed);
+        }
+    }
+
+    private LocalDateTime lastCommittedPosition() throws IOException {
+        if (writer.getDocStats().numDocs == 0) {
+            return null;
+        }
+        for (Map.Entry<String, String> entry : writer.getLiveCommitData()) {
+            if (COMMIT_INDEXED_UNTIL.equals(entry.getKey())) {
+                return LocalDateTime.parse(entry.getValue());
+            }
+        }
+        return null;
+    }
+
+    private void release(IndexSearcher searcher) {
+        try {
+            searcherManager.release(searcher);
+        } catch (IOException e) {
+            LOG.warn("Failed to release index searcher", e);
+        }
+    }
+}
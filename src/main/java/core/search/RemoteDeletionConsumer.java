@@ -0,0 +1,39 @@
+package core.search;
+
+import api.dto.MessageDeletedEvent;
+import api.dto.SessionDeletedEvent;
+import core.cache.ParticipantCache;
+import io.smallrye.common.annotation.Blocking;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.reactive.messaging.Incoming;
+
+/**
+ * Drops messages and sessions deleted on any node from this node's search index, and
+ * deleted sessions from its participant cache. Like message events, every node consumes the
+ * deletion topics in its own consumer group; a node that restarts under the same group
+ * resumes where it stopped, so it also hears about deletions made while it was down.
+ * Removing what is already gone changes nothing.
+ */
+@ApplicationScoped
+public class RemoteDeletionConsumer {
+
+    @Inject
+    MessageSearchIndex searchIndex;
+
+    @Inject
+    ParticipantCache participantCache;
+
+    @Incoming("message-deletions-in")
+    @Blocking
+    public void onMessageDeleted(MessageDeletedEvent event) {
+        searchIndex.remove(event.messageId);
+    }
+
+    @Incoming("session-deletions-in")
+    @Blocking
+    public void onSessionDeleted(SessionDeletedEvent event) {
+        participantCache.evictSession(event.sessionId);
+        searchIndex.removeSession(event.sessionId);
+    }
+}
@@ -0,0 +1,11 @@
+package core.search;
+
+import api.dto.SessionDeletedEvent;
+import io.quarkus.kafka.client.serialization.ObjectMapperDeserializer;
+
+public class SessionDeletedEventDeserializer extends ObjectMapperDeserializer<SessionDeletedEvent> {
+
+    public SessionDeletedEventDeserializer() {
+        super(SessionDeletedEvent.class);
+    }
+}
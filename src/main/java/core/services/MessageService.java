@@ -1,171 +1,506 @@
 package core.services;
 
+import api.dto.MessageBatchErrorDTO;
+import api.dto.MessageBatchResultDTO;
 import api.dto.MessageCreatedEvent;
+import api.dto.MessageDeletedEvent;
 import api.dto.MessageDTO;
+import api.dto.MessagePageDTO;
+import api.dto.SessionDTO;
+import core.archive.MessageArchiver;
+import core.cache.ParticipantCache;
+import core.cache.SessionParticipants;
 import core.mappers.DTOMapper;
+import core.outbox.MessageOutbox;
+import core.pagination.MessageCursor;
+import core.search.MessageSearchIndex;
+import data.entities.ArchivedMessage;
 import data.entities.Message;
 import data.entities.Session;
 import data.entities.User;
+import data.repositories.ArchivedMessageRepository;
 import data.repositories.MessageRepository;
 import data.repositories.SessionRepository;
 import data.repositories.UserRepository;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
-import org.eclipse.microprofile.reactive.messaging.Channel;
-import org.eclipse.microprofile.reactive.messaging.Emitter;
-import jakarta.ws.rs.core.Response;
-import java.util.concurrent.CompletionStage;
+import org.jboss.logging.Logger;
 
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @ApplicationScoped
 public class MessageService {
 
+    private static final Logger LOG = Logger.getLogger(MessageService.class);
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+    public static final int PREVIEW_LENGTH = 200;
+    public static final int DEFAULT_SEARCH_PAGE_SIZE = 20;
+    public static final int MAX_SEARCH_PAGE_SIZE = 100;
+    public static final int MAX_BATCH_SIZE = 1000;
+    // Matches quarkus.hibernate-orm.jdbc.statement-batch-size so each flush sends whole JDBC batches
+    private static final int BATCH_FLUSH_SIZE = 100;
+
     @Inject
     MessageRepository messageRepository;
     @Inject
+    ArchivedMessageRepository archivedMessageRepository;
+    @Inject
     SessionRepository sessionRepository;
     @Inject
     UserRepository userRepository;
     @Inject
-    @Channel("message-events-out")
-    Emitter<MessageCreatedEvent> eventEmitter;
+    MessageOutbox outbox;
+    @Inject
+    Event<MessageCreatedEvent> messageCreated;
+    @Inject
+    Event<MessageDeletedEvent> messageDeleted;
+    @Inject
+    MessageSearchIndex searchIndex;
+    @Inject
+    ParticipantCache participantCache;
 
     @Inject
     public MessageService(MessageRepository messageRepository,
+                          ArchivedMessageRepository archivedMessageRepository,
                           SessionRepository sessionRepository,
                           UserRepository userRepository,
-                          @Channel("message-events-out") Emitter<MessageCreatedEvent> eventEmitter) {
+                          MessageOutbox outbox,
+                          Event<MessageCreatedEvent> messageCreated,
+                          Event<MessageDeletedEvent> messageDeleted,
+                          MessageSearchIndex searchIndex,
+                          ParticipantCache participantCache) {
 
         this.messageRepository = messageRepository;
+        this.archivedMessageRepository = archivedMessageRepository;
         this.sessionRepository = sessionRepository;
         this.userRepository = userRepository;
-        this.eventEmitter = eventEmitter;
+        this.outbox = outbox;
+        this.messageCreated = messageCreated;
+        this.messageDeleted = messageDeleted;
+        this.searchIndex = searchIndex;
+        this.participantCache = participantCache;
     }
 
     public MessageService() {
         this.messageRepository = null;
+        this.archivedMessageRepository = null;
         this.sessionRepository = null;
         this.userRepository = null;
-        this.eventEmitter = null;
+        this.outbox = null;
+        this.messageCreated = null;
+        this.messageDeleted = null;
+        this.searchIndex = null;
+        this.participantCache = null;
     }
 
     public List<MessageDTO> getSessionMessages(UUID sessionId) {
-        Session session = sessionRepository.findById(sessionId);
-        if (session == null) {
-            throw new IllegalArgumentException("Session not found");
+        SessionParticipants participants = participantCache.requireSession(sessionId);
+        List<MessageDTO> messages = new ArrayList<>();
+        if (mayHaveArchive(participants)) {
+            messages.addAll(archivedMessageRepository.findBySessionId(sessionId));
         }
-        List<Message> messages = messageRepository.findBySessionId(sessionId);
-        return messages.stream()
-                .map(DTOMapper::toMessageDTO)
-                .collect(Collectors.toList());
+        messages.addAll(messageRepository.findBySessionIdAsDTO(sessionId));
+        return messages;
+    }
+
+    /** Fails with "Session not found" unless the session exists */
+    public void requireSession(UUID sessionId) {
+        participantCache.requireSession(sessionId);
+    }
+
+    /**
+     * Hands a session's history to the consumer oldest first, one message at a time, so
+     * memory stays flat however long the history is.
+     */
+    @Transactional
+    public void streamSessionMessages(UUID sessionId, Consumer<MessageDTO> consumer) {
+        if (mayHaveArchive(participantCache.requireSession(sessionId))) {
+            try (Stream<MessageDTO> archived = archivedMessageRepository.streamBySessionId(sessionId)) {
+                archived.forEach(consumer);
+            }
+        }
+        try (Stream<MessageDTO> messages = messageRepository.streamBySessionId(sessionId)) {
+            messages.forEach(consumer);
+        }
+    }
+
+    /**
+     * Keyset page of a session's history in chronological order.
+     * Without a cursor the newest page is returned; {@code before} walks back in time
+     * and {@code after} fetches messages newer than the given cursor.
+     * Archived messages are all older than live ones, so a page that runs out of live
+     * messages going back continues in the archive, and one starting from an archived
+     * cursor going forward continues in the live table.
+     */
+    public MessagePageDTO getSessionMessagesPage(UUID sessionId, String before, String after, Integer limit) {
+        if (before != null && after != null) {
+            throw new IllegalArgumentException("Only one of 'before' and 'after' can be given");
+        }
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        SessionParticipants participants = participantCache.requireSession(sessionId);
+
+        // One extra row tells us whether another page exists without a COUNT query
+        int wanted = pageSize + 1;
+        List<MessageDTO> messages;
+        boolean newestFirst;
+        if (after != null) {
+            MessageCursor cursor = MessageCursor.decode(after);
+            messages = new ArrayList<>();
+            if (MessageArchiver.mayBeArchived(cursor.getDateTime())) {
+                messages.addAll(archivedMessageRepository.findSessionMessagesAfter(sessionId, cursor.getDateTime(), cursor.getMessageId(), wanted));
+            }
+            if (messages.size() < wanted) {
+                messages.addAll(messageRepository.findSessionMessagesAfterAsDTO(sessionId, cursor.getDateTime(), cursor.getMessageId(), wanted - messages.size()));
+            }
+            newestFirst = false;
+        } else {
+            MessageCursor cursor = before != null ? MessageCursor.decode(before) : null;
+            messages = new ArrayList<>(cursor != null
+                    ? messageRepository.findSessionMessagesBeforeAsDTO(sessionId, cursor.getDateTime(), cursor.getMessageId(), wanted)
+                    : messageRepository.findLatestSessionMessagesAsDTO(sessionId, wanted));
+            if (messages.size() < wanted && mayHaveArchive(participants)) {
+                MessageCursor from = messages.isEmpty() ? cursor : MessageCursor.of(messages.get(messages.size() - 1));
+                messages.addAll(from != null
+                        ? archivedMessageRepository.findSessionMessagesBefore(sessionId, from.getDateTime(), from.getMessageId(), wanted - messages.size())
+                        : archivedMessageRepository.findLatestSessionMessages(sessionId, wanted - messages.size()));
+            }
+            newestFirst = true;
+        }
+
+        boolean hasMore = messages.size() > pageSize;
+        if (hasMore) {
+            messages = messages.subList(0, pageSize);
+        }
+        if (newestFirst) {
+            messages = new ArrayList<>(messages);
+            Collections.reverse(messages);
+        }
+
+        if (messages.isEmpty()) {
+            return new MessagePageDTO(List.of(), null, null, false);
+        }
+        return new MessagePageDTO(
+                messages,
+                MessageCursor.of(messages.get(0)).encode(),
+                MessageCursor.of(messages.get(messages.size() - 1)).encode(),
+                hasMore
+        );
     }
 
     public MessageDTO getMessageById(UUID messageId) {
-        Message message = messageRepository.findById(messageId);
+        MessageDTO message = messageRepository.findByIdAsDTO(messageId);
+        if (message == null) {
+            message = archivedMessageRepository.findMessage(messageId);
+        }
         if (message == null) {
             throw new IllegalArgumentException("Message not found");
         }
-        return DTOMapper.toMessageDTO(message);
+        return message;
     }
 
     public MessageDTO getLatestMessage(UUID sessionId) {
-        Session session = sessionRepository.findById(sessionId);
+        SessionDTO session = sessionRepository.findByIdAsDTO(sessionId);
         if (session == null) {
             throw new IllegalArgumentException("Session not found");
         }
-        Message latest = messageRepository.findLatestMessageInSession(sessionId);
-        return DTOMapper.toMessageDTO(latest);
+        // The session summary knows the latest message and its time, which is the session's
+        // last activity, so this is a primary key lookup even with partitioned messages
+        if (session.lastMessageId == null) {
+            return null;
+        }
+        MessageDTO latest = messageRepository.findByIdAsDTO(session.lastMessageId, session.lastActivity);
+        if (latest == null) {
+            // A session idle for longer than the archive age has its last message archived
+            latest = archivedMessageRepository.findMessage(session.lastMessageId);
+        }
+        return latest;
     }
 
-    public List<MessageDTO> searchMessages(String searchTerm) {
-        if (searchTerm == null || searchTerm.isEmpty()) {
+    /**
+     * Full-text search over message content, ranked by relevance.
+     * When {@code userId} is given only that user's sessions are searched.
+     */
+    public List<MessageDTO> searchMessages(String searchTerm, UUID userId, int pageIndex, Integer pageSize) {
+        if (searchTerm == null || searchTerm.isBlank()) {
             throw new IllegalArgumentException("Search term cannot be empty");
         }
-        List<Message> messages = messageRepository.searchByMessageContent(searchTerm);
-        return messages.stream()
-                .map(DTOMapper::toMessageDTO)
+        int size = pageSize == null ? DEFAULT_SEARCH_PAGE_SIZE : pageSize;
+        if (pageIndex < 0) {
+            throw new IllegalArgumentException("Page index cannot be negative");
+        }
+        if (size < 1 || size > MAX_SEARCH_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_SEARCH_PAGE_SIZE);
+        }
+
+        List<UUID> rankedIds = searchIndex.search(searchTerm, userId, pageIndex, size);
+        if (rankedIds.isEmpty()) {
+            return List.of();
+        }
+        List<MessageDTO> found = new ArrayList<>(messageRepository.findByIdsAsDTO(rankedIds));
+        if (found.size() < rankedIds.size()) {
+            found.addAll(archivedMessageRepository.findMessages(rankedIds));
+        }
+        // A message the archiver moved between the two reads comes back from both
+        Map<UUID, MessageDTO> byId = found.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toMap(message -> message.messageId, Function.identity(), (live, archived) -> live));
+        // Keep the index ranking; IDs deleted since the last index refresh are skipped
+        return rankedIds.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
     }
 
     public long countSessionMessages(UUID sessionId) {
-        return messageRepository.countBySession(sessionId);
+        SessionDTO session = sessionRepository.findByIdAsDTO(sessionId);
+        return session != null ? session.messageCount : 0L;
     }
 
     @Transactional
     public MessageDTO createMessage(MessageDTO dto) {
-        System.out.println("DEBUG: createMessage called with DTO: " + dto);
-
         if (dto.sessionId == null) {
-            System.err.println("ERROR: Session ID is missing");
             throw new IllegalArgumentException("Session ID is required");
         }
         if (dto.senderId == null) {
-            System.err.println("ERROR: Sender ID is missing");
             throw new IllegalArgumentException("Sender ID is required");
         }
         if (dto.message == null || dto.message.isEmpty()) {
-            System.err.println("ERROR: Message content is empty");
             throw new IllegalArgumentException("Message content is required");
         }
 
-        Session session = sessionRepository.findById(dto.sessionId);
-        if (session == null) {
-            System.err.println("ERROR: Session not found for ID: " + dto.sessionId);
-            throw new IllegalArgumentException("Session not found");
-        }
+        SessionParticipants participants = participantCache.requireSession(dto.sessionId);
 
-        User sender = userRepository.findById(dto.senderId);
-        if (sender == null) {
-            System.err.println("ERROR: Sender not found for ID: " + dto.senderId);
+        if (!participantCache.userExists(dto.senderId)) {
+            LOG.debugf("Rejected message for session %s: sender %s not found", dto.sessionId, dto.senderId);
             throw new IllegalArgumentException("Sender not found");
         }
 
+        // Both rows are known to exist, so references are enough to fill in the foreign keys
+        Session session = sessionRepository.getEntityManager().getReference(Session.class, participants.getSessionId());
+        User sender = userRepository.getEntityManager().getReference(User.class, dto.senderId);
+
         Message message = new Message(session, sender, dto.message);
         messageRepository.persist(message);
-        System.out.println("DEBUG: Message persisted to DB with ID: " + message.getMessageId());
+        if (sessionRepository.recordMessageAdded(participants.getSessionId(), message.getMessageId(),
+                preview(message.getMessage()), message.getDateTime()) == 0) {
+            // Deleted, on this node or another, after its participants were cached; the
+            // message is rolled back before it is ever written
+            participantCache.evictSession(participants.getSessionId());
+            throw new IllegalArgumentException("Session not found");
+        }
 
-        MessageCreatedEvent event = new MessageCreatedEvent();
-        event.messageId = message.getMessageId();
-        event.sessionId = message.getSessionId();
-        event.senderId = sender.getId();
+        MessageCreatedEvent event = toCreatedEvent(message, participants);
+        event.sequence = sessionRepository.findEventSequence(participants.getSessionId());
 
-        if (session.getSenderId().equals(sender.getId())) {
-            event.receiverId = session.getReceiverId();
-        } else {
-            event.receiverId = session.getSenderId();
+        // Observers such as the search index run once the transaction has committed
+        messageCreated.fire(event);
+
+        // Relayed to Kafka after commit, so a rolled back message never produces an event
+        outbox.enqueue(event);
+        // Identifiers only; message content must never reach the logs
+        LOG.debugf("Stored message %s in session %s", event.messageId, event.sessionId);
+
+        return DTOMapper.toMessageDTO(message);
+    }
+
+    /**
+     * Creates many messages in one transaction.
+     * Sessions and senders are validated with one query each, inserts go out as JDBC batches
+     * and each session summary is updated once. Invalid items are reported by index and do
+     * not prevent the valid ones from being stored.
+     */
+    @Transactional
+    public MessageBatchResultDTO createMessages(List<MessageDTO> dtos) {
+        if (dtos == null || dtos.isEmpty()) {
+            throw new IllegalArgumentException("At least one message is required");
+        }
+        if (dtos.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("A batch can hold at most " + MAX_BATCH_SIZE + " messages");
         }
 
-        event.content = message.getMessage();
-        event.timestamp = System.currentTimeMillis();
+        Set<UUID> sessionIds = new HashSet<>();
+        Set<UUID> senderIds = new HashSet<>();
+        for (MessageDTO dto : dtos) {
+            if (dto != null && dto.sessionId != null) {
+                sessionIds.add(dto.sessionId);
+            }
+            if (dto != null && dto.senderId != null) {
+                senderIds.add(dto.senderId);
+            }
+        }
+        Map<UUID, SessionParticipants> sessions = sessionIds.isEmpty() ? Map.of() : participantCache.findSessions(sessionIds);
+        Set<UUID> senders = senderIds.isEmpty() ? Set.of() : participantCache.findExistingUsers(senderIds);
 
-        System.out.println("DEBUG: Prepared Kafka event for Receiver: " + event.receiverId);
+        List<MessageDTO> created = new ArrayList<>();
+        List<MessageBatchErrorDTO> errors = new ArrayList<>();
+        List<MessageCreatedEvent> events = new ArrayList<>();
+        Map<UUID, Long> addedPerSession = new HashMap<>();
+        Map<UUID, Message> latestPerSession = new HashMap<>();
+        for (int i = 0; i < dtos.size(); i++) {
+            MessageDTO dto = dtos.get(i);
+            String error = validateBatchItem(dto, sessions, senders);
+            if (error != null) {
+                errors.add(new MessageBatchErrorDTO(i, error));
+                continue;
+            }
 
-        try {
-            CompletionStage<Void> future = eventEmitter.send(event);
+            Session session = sessionRepository.getEntityManager().getReference(Session.class, dto.sessionId);
+            User sender = userRepository.getEntityManager().getReference(User.class, dto.senderId);
+            Message message = new Message(session, sender, dto.message);
+            messageRepository.persist(message);
 
-            future.whenComplete((success, failure) -> {
-                if (failure != null) {
-                    System.err.println("ERROR: Failed to send to Kafka: " + failure.getMessage());
-                    failure.printStackTrace();
-                } else {
-                    System.out.println("DEBUG: Successfully sent to Kafka topic!");
-                }
-            });
+            created.add(DTOMapper.toMessageDTO(message));
+            events.add(toCreatedEvent(message, sessions.get(dto.sessionId)));
+            addedPerSession.merge(dto.sessionId, 1L, Long::sum);
+            latestPerSession.merge(dto.sessionId, message, (current, candidate) -> isNewer(candidate, current) ? candidate : current);
 
-        } catch (Exception e) {
-            System.err.println("ERROR: Exception during Kafka send call: " + e.getMessage());
-            e.printStackTrace();
+            // Keeps the persistence context small on large batches
+            if (created.size() % BATCH_FLUSH_SIZE == 0) {
+                messageRepository.flush();
+                messageRepository.getEntityManager().clear();
+            }
         }
 
-        return DTOMapper.toMessageDTO(message);
+        Map<UUID, Long> nextSequence = new HashMap<>();
+        List<UUID> deletedSessions = new ArrayList<>();
+        for (Map.Entry<UUID, Long> entry : addedPerSession.entrySet()) {
+            Message latest = latestPerSession.get(entry.getKey());
+            if (sessionRepository.recordMessagesAdded(entry.getKey(), entry.getValue(), latest.getMessageId(),
+                    preview(latest.getMessage()), latest.getDateTime()) == 0) {
+                deletedSessions.add(entry.getKey());
+                continue;
+            }
+            nextSequence.put(entry.getKey(), sessionRepository.findEventSequence(entry.getKey()) - entry.getValue() + 1);
+        }
+        if (!deletedSessions.isEmpty()) {
+            // Deleted after their participants were cached. The batch is rolled back, and
+            // once they are evicted a retry reports their messages one by one
+            deletedSessions.forEach(participantCache::evictSession);
+            throw new IllegalArgumentException("Session not found");
+        }
+        // The reserved range is handed out in request order
+        for (MessageCreatedEvent event : events) {
+            event.sequence = nextSequence.get(event.sessionId);
+            nextSequence.put(event.sessionId, event.sequence + 1);
+        }
+
+        events.forEach(messageCreated::fire);
+        events.forEach(outbox::enqueue);
+        LOG.debugf("Stored %d messages in %d sessions, rejected %d", created.size(), addedPerSession.size(), errors.size());
+
+        return new MessageBatchResultDTO(created, errors);
     }
 
     @Transactional
     public boolean deleteMessage(UUID messageId) {
-        return messageRepository.deleteById(messageId);
+        UUID sessionId;
+        Message message = messageRepository.findById(messageId);
+        if (message != null) {
+            sessionId = message.getSessionId();
+            messageRepository.delete(message);
+            messageRepository.flush();
+        } else {
+            ArchivedMessage archived = archivedMessageRepository.findById(messageId);
+            if (archived == null) {
+                return false;
+            }
+            sessionId = archived.getSessionId();
+            archivedMessageRepository.delete(archived);
+            archivedMessageRepository.flush();
+        }
+
+        sessionRepository.recordMessageRemoved(sessionId);
+        Session session = sessionRepository.findById(sessionId);
+        if (session != null && messageId.equals(session.getLastMessageId())) {
+            Message live = messageRepository.findLatestMessageInSession(sessionId);
+            MessageDTO latest = live != null ? DTOMapper.toMessageDTO(live) : null;
+            if (latest == null && MessageArchiver.mayBeArchived(session.getCreationDate())) {
+                List<MessageDTO> archivedLatest = archivedMessageRepository.findLatestSessionMessages(sessionId, 1);
+                latest = archivedLatest.isEmpty() ? null : archivedLatest.get(0);
+            }
+            if (latest != null) {
+                sessionRepository.updateLastMessage(sessionId, latest.messageId,
+                        preview(latest.message), latest.dateTime);
+            } else {
+                sessionRepository.updateLastMessage(sessionId, null, null, session.getCreationDate());
+            }
+        }
+
+        MessageDeletedEvent event = new MessageDeletedEvent(messageId, sessionId);
+        messageDeleted.fire(event);
+        // Other nodes drop it from their search index once the outbox has relayed it
+        outbox.enqueue(event, session != null ? session.getEventSequence() : 0);
+        return true;
+    }
+
+    private static String validateBatchItem(MessageDTO dto, Map<UUID, SessionParticipants> sessions, Set<UUID> senders) {
+        if (dto == null) {
+            return "Message is required";
+        }
+        if (dto.sessionId == null) {
+            return "Session ID is required";
+        }
+        if (dto.senderId == null) {
+            return "Sender ID is required";
+        }
+        if (dto.message == null || dto.message.isEmpty()) {
+            return "Message content is required";
+        }
+        if (!sessions.containsKey(dto.sessionId)) {
+            return "Session not found";
+        }
+        if (!senders.contains(dto.senderId)) {
+            return "Sender not found";
+        }
+        return null;
+    }
+
+    private static boolean isNewer(Message candidate, Message current) {
+        int byTime = candidate.getDateTime().compareTo(current.getDateTime());
+        return byTime > 0 || (byTime == 0 && candidate.getMessageId().compareTo(current.getMessageId()) > 0);
+    }
+
+    private static MessageCreatedEvent toCreatedEvent(Message message, SessionParticipants participants) {
+        MessageCreatedEvent event = new MessageCreatedEvent();
+        event.messageId = message.getMessageId();
+        event.sessionId = message.getSessionId();
+        event.senderId = message.getSenderId();
+        event.receiverId = participants.counterpartOf(message.getSenderId());
+        event.content = message.getMessage();
+        event.timestamp = System.currentTimeMillis();
+        return event;
+    }
+
+    /** Sessions younger than the minimum archive age never have archived messages */
+    private static boolean mayHaveArchive(SessionParticipants participants) {
+        return MessageArchiver.mayBeArchived(participants.getCreationDate());
+    }
+
+    public static String preview(String content) {
+        if (content.codePointCount(0, content.length()) <= PREVIEW_LENGTH) {
+            return content;
+        }
+        return content.substring(0, content.offsetByCodePoints(0, PREVIEW_LENGTH));
     }
 }
\ No newline at end of file
@@ -0,0 +1,119 @@
+package core.services;
+
+import api.dto.SessionDeletionJobDTO;
+import data.entities.SessionDeletionJob;
+import data.repositories.SessionDeletionJobRepository;
+import io.quarkus.arc.Arc;
+import io.quarkus.arc.ManagedContext;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Session deletes that run in the background, for sessions too large to delete within a
+ * request. A job runs on the node that started it, and its progress is kept in the
+ * session_deletion_jobs table, so any node can report on it, until
+ * {@code session-delete.job-retention} after it finishes. A job that has not moved for
+ * {@code session-delete.job-timeout} died with its node and is marked failed; the session
+ * can then be deleted again, as deleting is safe to repeat.
+ */
+@ApplicationScoped
+public class SessionDeletionJobs {
+
+    private static final Logger LOG = Logger.getLogger(SessionDeletionJobs.class);
+
+    public static final String RUNNING = "RUNNING";
+    public static final String DONE = "DONE";
+    public static final String NOT_FOUND = "NOT_FOUND";
+    public static final String FAILED = "FAILED";
+
+    @Inject
+    SessionService sessionService;
+
+    @Inject
+    SessionDeletionJobRepository jobRepository;
+
+    @ConfigProperty(name = "session-delete.job-retention", defaultValue = "1h")
+    Duration retention;
+
+    @ConfigProperty(name = "session-delete.job-timeout", defaultValue = "10m")
+    Duration timeout;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /** Starts deleting the session, or returns the job already deleting it on any node */
+    public SessionDeletionJobDTO start(UUID sessionId) {
+        LocalDateTime now = LocalDateTime.now();
+        SessionDeletionJob running = QuarkusTransaction.requiringNew().call(() -> {
+            jobRepository.finishStale(RUNNING, now.minus(timeout), FAILED, now);
+            return jobRepository.findActive(sessionId, RUNNING, now.minus(timeout));
+        });
+        if (running != null) {
+            return toDTO(running);
+        }
+        // Committed before the job runs, so its progress updates find the row
+        SessionDeletionJob job = new SessionDeletionJob(sessionId, RUNNING);
+        QuarkusTransaction.requiringNew().run(() -> jobRepository.persist(job));
+        executor.execute(() -> run(job.getJobId(), sessionId));
+        return toDTO(job);
+    }
+
+    public Optional<SessionDeletionJobDTO> find(UUID jobId) {
+        return jobRepository.findByIdOptional(jobId).map(SessionDeletionJobs::toDTO);
+    }
+
+    private void run(UUID jobId, UUID sessionId) {
+        // The persistence unit picks its datasource per request, so the job needs a request of its own
+        ManagedContext requestContext = Arc.container().requestContext();
+        requestContext.activate();
+        AtomicLong deletedMessages = new AtomicLong();
+        try {
+            boolean deleted = sessionService.deleteSession(sessionId, count -> {
+                deletedMessages.addAndGet(count);
+                QuarkusTransaction.requiringNew().run(() -> jobRepository.addDeletedMessages(jobId, count, LocalDateTime.now()));
+            });
+            finish(jobId, deleted ? DONE : NOT_FOUND);
+            LOG.debugf("Deletion job %s removed session %s with %d messages", jobId, sessionId, deletedMessages.get());
+        } catch (RuntimeException e) {
+            LOG.errorf(e, "Deletion job %s failed for session %s", jobId, sessionId);
+            finish(jobId, FAILED);
+        } finally {
+            requestContext.terminate();
+        }
+    }
+
+    private void finish(UUID jobId, String outcome) {
+        QuarkusTransaction.requiringNew().run(() -> jobRepository.finish(jobId, outcome, LocalDateTime.now()));
+    }
+
+    @Scheduled(every = "10m")
+    void forgetFinished() {
+        LocalDateTime now = LocalDateTime.now();
+        QuarkusTransaction.requiringNew().run(() -> {
+            jobRepository.finishStale(RUNNING, now.minus(timeout), FAILED, now);
+            jobRepository.deleteFinishedBefore(now.minus(retention));
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static SessionDeletionJobDTO toDTO(SessionDeletionJob job) {
+        return new SessionDeletionJobDTO(job.getJobId(), job.getSessionId(), job.getStatus(),
+                job.getDeletedMessages(), job.getStartedAt(), job.getFinishedAt());
+    }
+}
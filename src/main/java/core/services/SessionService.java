@@ -1,25 +1,59 @@
 package core.services;
 
+import api.dto.MessageDTO;
+import api.dto.SessionDeletedEvent;
 import api.dto.SessionDTO;
+import core.archive.MessageArchiver;
+import core.cache.ParticipantCache;
 import core.mappers.DTOMapper;
-import data.entities.Message;
+import core.outbox.MessageOutbox;
 import data.entities.Session;
 import data.entities.User;
+import data.repositories.ArchivedMessageRepository;
 import data.repositories.MessageRepository;
 import data.repositories.SessionRepository;
 import data.repositories.UserRepository;
+import io.quarkus.narayana.jta.QuarkusTransaction;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @ApplicationScoped
 public class SessionService {
 
+    public static final int DEFAULT_INBOX_SIZE = 50;
+    public static final int MAX_INBOX_SIZE = 200;
+
+    private static final Comparator<SessionDTO> BY_ACTIVITY =
+            Comparator.comparing((SessionDTO session) -> session.lastActivity).reversed();
+
+    /** Receives a streamed session listing: each session is followed by its messages */
+    public interface SessionSink {
+        void startSession(SessionDTO session);
+
+        void message(MessageDTO message);
+
+        void endSession();
+    }
+
     @Inject
     SessionRepository sessionRepository;
 
@@ -29,48 +63,178 @@ public class SessionService {
     @Inject
     MessageRepository messageRepository;
 
+    @Inject
+    ArchivedMessageRepository archivedMessageRepository;
+
+    @Inject
+    ParticipantCache participantCache;
+
+    @Inject
+    Event<SessionDeletedEvent> sessionDeleted;
+
+    @Inject
+    MessageOutbox outbox;
+
+    @ConfigProperty(name = "session-delete.chunk-size", defaultValue = "1000")
+    int deleteChunkSize;
+
 
     public List<SessionDTO> getUserSessions(UUID userId, boolean eagerMessages) {
-        User user = userRepository.findById(userId);
-        if (user == null) {
+        if (!participantCache.userExists(userId)) {
+            throw new IllegalArgumentException("User not found");
+        }
+
+        List<SessionDTO> sessions = sessionRepository.findAllUserSessionsAsDTO(userId);
+        sessions.sort(BY_ACTIVITY);
+        return withMessages(sessions, eagerMessages);
+    }
+
+    /** Fails with "User not found" unless the user exists */
+    public void requireUser(UUID userId) {
+        if (!participantCache.userExists(userId)) {
             throw new IllegalArgumentException("User not found");
         }
+    }
+
+    /**
+     * Whether the user exists and is the caller: the caller's principal name is either the
+     * user ID or the user's email.
+     */
+    public boolean isCaller(UUID userId, String principalName) {
+        if (userId.toString().equals(principalName)) {
+            return participantCache.userExists(userId);
+        }
+        User user = userRepository.findById(userId);
+        return user != null && user.getEmail().equalsIgnoreCase(principalName);
+    }
 
-        List<Session> sessions = sessionRepository.findAllUserSessions(userId);
-        return sessions.stream()
-                .map(s -> DTOMapper.toSessionDTO(s, eagerMessages))
+    /**
+     * Streaming form of {@code getUserSessions(userId, true)}. Sessions come most recently
+     * active first and their messages oldest first; only one message is held at a time.
+     * All histories come from one cursor in the same order, split by session while writing,
+     * so the number of queries does not grow with the number of sessions.
+     */
+    @Transactional
+    public void streamUserSessions(UUID userId, SessionSink sink) {
+        List<SessionDTO> sessions = sessionRepository.findAllUserSessionsAsDTO(userId);
+        sessions.sort(BY_ACTIVITY);
+        if (sessions.isEmpty()) {
+            return;
+        }
+
+        // Sessions not yet written, in activity order. Sessions tied on activity may come from
+        // the cursor in another order than the list, so a session is written when its first
+        // message arrives, after the pending sessions that were active more recently.
+        Map<UUID, SessionDTO> pending = new LinkedHashMap<>();
+        sessions.forEach(session -> pending.put(session.sessionId, session));
+        List<UUID> archivedSessionIds = sessions.stream()
+                .filter(s -> MessageArchiver.mayBeArchived(s.creationDate))
+                .map(s -> s.sessionId)
                 .collect(Collectors.toList());
+        UUID[] current = new UUID[1];
+        try (Stream<MessageDTO> messages = messageRepository.streamBySessionIdsByActivity(pending.keySet(), archivedSessionIds)) {
+            messages.forEach(message -> {
+                if (!message.sessionId.equals(current[0])) {
+                    if (current[0] != null) {
+                        sink.endSession();
+                    }
+                    SessionDTO session = pending.remove(message.sessionId);
+                    writeSessionsActiveBefore(pending, session, sink);
+                    sink.startSession(session);
+                    current[0] = message.sessionId;
+                }
+                sink.message(message);
+            });
+        }
+        if (current[0] != null) {
+            sink.endSession();
+        }
+        writeSessionsActiveBefore(pending, null, sink);
+    }
+
+    /** Writes, without messages, the pending sessions active more recently than {@code next}, or all of them */
+    private static void writeSessionsActiveBefore(Map<UUID, SessionDTO> pending, SessionDTO next, SessionSink sink) {
+        Iterator<SessionDTO> sessions = pending.values().iterator();
+        while (sessions.hasNext()) {
+            SessionDTO session = sessions.next();
+            if (next != null && BY_ACTIVITY.compare(session, next) >= 0) {
+                return;
+            }
+            sink.startSession(session);
+            sink.endSession();
+            sessions.remove();
+        }
+    }
+
+    /** The user's most recently active sessions with their last message preview and message count */
+    public List<SessionDTO> getInbox(UUID userId, Integer limit) {
+        if (limit != null && (limit < 1 || limit > MAX_INBOX_SIZE)) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_INBOX_SIZE);
+        }
+        if (!participantCache.userExists(userId)) {
+            throw new IllegalArgumentException("User not found");
+        }
+
+        int size = limit != null ? limit : DEFAULT_INBOX_SIZE;
+        return sessionRepository.findUserSessionsByActivityAsDTO(userId, size);
+    }
+
+    /** Changes with every change to the session or its messages; read without loading either */
+    public long getSessionRevision(UUID sessionId) {
+        Long revision = sessionRepository.findRevision(sessionId);
+        if (revision == null) {
+            throw new IllegalArgumentException("Session not found");
+        }
+        return revision;
+    }
+
+    /**
+     * Digest of the ID and revision of each of the user's sessions, so it changes when a
+     * session is added, removed or changed. Only reads two columns per session.
+     */
+    public String getUserSessionsRevision(UUID userId) {
+        requireUser(userId);
+        List<Object[]> revisions = new ArrayList<>(sessionRepository.findUserSessionRevisions(userId));
+        revisions.sort(Comparator.comparing(row -> (UUID) row[0]));
+        MessageDigest digest = sha256();
+        ByteBuffer entry = ByteBuffer.allocate(24);
+        for (Object[] row : revisions) {
+            UUID sessionId = (UUID) row[0];
+            entry.clear();
+            entry.putLong(sessionId.getMostSignificantBits())
+                    .putLong(sessionId.getLeastSignificantBits())
+                    .putLong((Long) row[1]);
+            digest.update(entry.array());
+        }
+        return HexFormat.of().formatHex(digest.digest(), 0, 16);
     }
 
     public SessionDTO getSessionById(UUID sessionId, boolean includeMessages) {
-        Session session = sessionRepository.findById(sessionId);
+        SessionDTO session = sessionRepository.findByIdAsDTO(sessionId);
         if (session == null) {
             throw new IllegalArgumentException("Session not found");
         }
 
         if (includeMessages) {
-            List<Message> messages = messageRepository.findBySessionId(sessionId); // Assuming returns List<Message>
-            session.setMessages(messages);
+            if (MessageArchiver.mayBeArchived(session.creationDate)) {
+                session.messages.addAll(archivedMessageRepository.findBySessionId(sessionId));
+            }
+            session.messages.addAll(messageRepository.findBySessionIdAsDTO(sessionId));
         }
-
-        return DTOMapper.toSessionDTO(session, includeMessages);
+        return session;
     }
 
     public List<SessionDTO> getSessionsBetweenUsers(UUID userId1, UUID userId2, boolean eagerMessages) {
-        User user1 = userRepository.findById(userId1);
-        if (user1 == null) {
+        if (!participantCache.userExists(userId1)) {
             throw new IllegalArgumentException("User 1 not found");
         }
 
-        User user2 = userRepository.findById(userId2);
-        if (user2 == null) {
+        if (!participantCache.userExists(userId2)) {
             throw new IllegalArgumentException("User 2 not found");
         }
 
-        List<Session> sessions = sessionRepository.findSessionsBetweenUsers(userId1, userId2);
-        return sessions.stream()
-                .map(s -> DTOMapper.toSessionDTO(s, eagerMessages))
-                .collect(Collectors.toList());
+        List<SessionDTO> sessions = sessionRepository.findSessionsBetweenUsersAsDTO(userId1, userId2);
+        return withMessages(sessions, eagerMessages);
     }
 
     public List<SessionDTO> searchSessionsBySubject(String searchTerm, boolean eagerMessages) {
@@ -78,29 +242,25 @@ public class SessionService {
             throw new IllegalArgumentException("Search term cannot be empty");
         }
 
-        List<Session> sessions = sessionRepository.searchBySubject(searchTerm);
-        return sessions.stream()
-                .map(s -> DTOMapper.toSessionDTO(s, eagerMessages))
-                .collect(Collectors.toList());
+        List<SessionDTO> sessions = sessionRepository.searchBySubjectAsDTO(searchTerm);
+        return withMessages(sessions, eagerMessages);
     }
 
     @Transactional
     public SessionDTO createSession(SessionDTO dto) {
         validateCreateDTO(dto);
 
-        User sender = userRepository.findById(dto.senderId);
-        if (sender == null) {
+        if (!participantCache.userExists(dto.senderId)) {
             throw new IllegalArgumentException("Sender not found");
         }
 
-        User receiver = userRepository.findById(dto.receiverId);
-        if (receiver == null) {
+        if (!participantCache.userExists(dto.receiverId)) {
             throw new IllegalArgumentException("Receiver not found");
         }
 
         Session session = new Session(
-                sender.getId(),
-                receiver.getId(),
+                dto.senderId,
+                dto.receiverId,
                 dto.subject,
                 LocalDateTime.now()
         );
@@ -109,15 +269,101 @@ public class SessionService {
         return DTOMapper.toSessionDTO(session, false);
     }
 
-    @Transactional
     public boolean deleteSession(UUID sessionId) {
-        return sessionRepository.deleteById(sessionId);
+        return deleteSession(sessionId, deleted -> { });
+    }
+
+    /**
+     * Deletes a session and its messages with set-based deletes, without loading any message.
+     * While more than a chunk remains, the oldest chunk is deleted in its own transaction, so
+     * locks and undo stay small and the session summary stays right: the latest message goes
+     * last. The final transaction locks the session row, which blocks new messages, and
+     * deletes the rest, archived messages included, with the session. {@code progress}
+     * receives each number of messages deleted. Safe to retry after a failure part way.
+     */
+    public boolean deleteSession(UUID sessionId, LongConsumer progress) {
+        List<UUID> oldest;
+        do {
+            oldest = QuarkusTransaction.requiringNew().call(() -> {
+                List<UUID> ids = messageRepository.findOldestIdsBySessionId(sessionId, deleteChunkSize + 1);
+                if (ids.size() > deleteChunkSize) {
+                    List<UUID> chunk = ids.subList(0, deleteChunkSize);
+                    messageRepository.deleteByIds(chunk);
+                    sessionRepository.recordMessagesRemoved(sessionId, chunk.size());
+                }
+                return ids;
+            });
+            if (oldest.size() > deleteChunkSize) {
+                progress.accept(deleteChunkSize);
+            }
+        } while (oldest.size() > deleteChunkSize);
+
+        Long deleted = QuarkusTransaction.requiringNew().call(() -> {
+            Session session = sessionRepository.findByIdForUpdate(sessionId);
+            if (session == null) {
+                return null;
+            }
+            long messages = messageRepository.deleteBySessionId(sessionId)
+                    + archivedMessageRepository.deleteBySessionId(sessionId);
+            sessionRepository.deleteRow(sessionId);
+            // Observers such as the search index drop the session once this commits, and
+            // other nodes once the outbox has relayed the event
+            SessionDeletedEvent event = new SessionDeletedEvent(sessionId);
+            sessionDeleted.fire(event);
+            outbox.enqueue(event, session.getEventSequence());
+            return messages;
+        });
+        if (deleted == null) {
+            return false;
+        }
+        progress.accept(deleted);
+        participantCache.evictSession(sessionId);
+        return true;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
 
     public long countUserSessions(UUID userId) {
         return sessionRepository.countUserSessions(userId);
     }
 
+    /**
+     * Fills in the messages of a list of sessions with one query for all of them, instead of
+     * one per session. Archived messages come first, and are only queried for sessions old
+     * enough to have any.
+     */
+    private List<SessionDTO> withMessages(List<SessionDTO> sessions, boolean includeMessages) {
+        if (!includeMessages || sessions.isEmpty()) {
+            return sessions;
+        }
+
+        List<UUID> sessionIds = sessions.stream()
+                .map(s -> s.sessionId)
+                .collect(Collectors.toList());
+        List<UUID> archivedSessionIds = sessions.stream()
+                .filter(s -> MessageArchiver.mayBeArchived(s.creationDate))
+                .map(s -> s.sessionId)
+                .collect(Collectors.toList());
+        List<MessageDTO> messages = new ArrayList<>();
+        if (!archivedSessionIds.isEmpty()) {
+            messages.addAll(archivedMessageRepository.findBySessionIds(archivedSessionIds));
+        }
+        messages.addAll(messageRepository.findBySessionIdsAsDTO(sessionIds));
+        Map<UUID, List<MessageDTO>> messagesBySession = messages.stream()
+                .collect(Collectors.groupingBy(m -> m.sessionId));
+
+        for (SessionDTO session : sessions) {
+            session.messages.addAll(messagesBySession.getOrDefault(session.sessionId, List.of()));
+        }
+        return sessions;
+    }
+
     private void validateCreateDTO(SessionDTO dto) {
         if (dto.senderId == null) {
             throw new IllegalArgumentException("Sender ID is required");
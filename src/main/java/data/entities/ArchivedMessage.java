@@ -0,0 +1,46 @@
+package data.entities;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A message moved out of {@code messages} by the archiver. Rows are only ever inserted
+ * from {@code messages} and deleted with their session; they are never updated.
+ */
+@Entity
+@Table(name = "messages_archive", indexes = {
+        @Index(name = "idx_messages_archive_session_time", columnList = "session_id, date_time, message_id")
+})
+public class ArchivedMessage extends PanacheEntityBase {
+
+    @Id
+    @Column(name = "message_id")
+    private UUID messageId;
+
+    @Column(name = "session_id", nullable = false)
+    private UUID sessionId;
+
+    @Column(name = "sender_id", nullable = false)
+    private UUID senderId;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String message;
+
+    @Column(name = "date_time", nullable = false)
+    private LocalDateTime dateTime;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+
+    public ArchivedMessage() {}
+
+    public UUID getMessageId() { return messageId; }
+    public UUID getSessionId() { return sessionId; }
+    public UUID getSenderId() { return senderId; }
+    public String getMessage() { return message; }
+    public LocalDateTime getDateTime() { return dateTime; }
+    public LocalDateTime getArchivedAt() { return archivedAt; }
+}
@@ -0,0 +1,34 @@
+package data.entities;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/** Which node runs a cluster-wide job, and until when; see core.cluster.JobLeases */
+@Entity
+@Table(name = "job_leases")
+public class JobLease extends PanacheEntityBase {
+
+    @Id
+    @Column(name = "name", length = 64)
+    private String name;
+
+    @Column(name = "owner", nullable = false, length = 64)
+    private String owner;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    public JobLease() {}
+
+    public JobLease(String name, String owner, LocalDateTime expiresAt) {
+        this.name = name;
+        this.owner = owner;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getName() { return name; }
+    public String getOwner() { return owner; }
+    public LocalDateTime getExpiresAt() { return expiresAt; }
+}
@@ -2,15 +2,21 @@ package data.entities;
 
 import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
 import jakarta.persistence.*;
+import org.hibernate.annotations.UuidGenerator;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.UUID;
 
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", indexes = {
+        @Index(name = "idx_messages_session_time", columnList = "session_id, date_time, message_id"),
+        @Index(name = "idx_messages_sender", columnList = "sender_id")
+})
 public class Message extends PanacheEntityBase {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @GeneratedValue
+    @UuidGenerator(style = UuidGenerator.Style.VERSION_7)
     @Column(name = "message_id")
     private UUID messageId;
 
@@ -42,7 +48,8 @@ public class Message extends PanacheEntityBase {
         this.sessionId = session != null ? session.getSessionId() : null;
         this.senderId = sender != null ? sender.getId() : null;
         this.message = messageContent;
-        this.dateTime = LocalDateTime.now();
+        // Truncated to the column precision so cursors built before and after a reload match
+        this.dateTime = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
     }
 
     public UUID getMessageId() {
@@ -74,7 +81,7 @@ public class Message extends PanacheEntityBase {
     }
 
     public void setDateTime(LocalDateTime newTime) {
-        this.dateTime = newTime;
+        this.dateTime = newTime != null ? newTime.truncatedTo(ChronoUnit.MICROS) : null;
     }
 
     public void setSession(Session session) {
@@ -0,0 +1,125 @@
+package data.entities;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+import org.hibernate.annotations.UuidGenerator;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Entity
+@Table(name = "message_outbox", indexes = {
+        @Index(name = "idx_message_outbox_due", columnList = "parked_at, next_attempt_at")
+})
+public class OutboxEvent extends PanacheEntityBase {
+
+    public static final int MAX_ERROR_LENGTH = 512;
+
+    @Id
+    @GeneratedValue
+    @UuidGenerator(style = UuidGenerator.Style.VERSION_7)
+    @Column(name = "event_id")
+    private UUID eventId;
+
+    @Column(name = "event_type", nullable = false, length = 64)
+    private String eventType;
+
+    @Column(name = "session_id", nullable = false)
+    private UUID sessionId;
+
+    // The session's sequence number of the event; the relay sends a session's events in this order
+    @Column(name = "event_sequence", nullable = false)
+    private long sequence;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Column(name = "correlation_id", length = 64)
+    private String correlationId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "last_error", length = MAX_ERROR_LENGTH)
+    private String lastError;
+
+    // When the relay may pick the event up next; see OutboxRepository.scheduleAt and MessageOutbox.relayBatch
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    // Set once the event has failed too often; parked events are never sent again by themselves
+    @Column(name = "parked_at")
+    private LocalDateTime parkedAt;
+
+    public OutboxEvent() {}
+
+    public OutboxEvent(String eventType, UUID sessionId, long sequence, String payload, String correlationId) {
+        this.eventType = eventType;
+        this.sessionId = sessionId;
+        this.sequence = sequence;
+        this.payload = payload;
+        this.correlationId = correlationId;
+        this.createdAt = LocalDateTime.now();
+        this.nextAttemptAt = createdAt;
+    }
+
+    public UUID getEventId() {
+        return eventId;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public UUID getSessionId() {
+        return sessionId;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public String getCorrelationId() {
+        return correlationId;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public LocalDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public LocalDateTime getParkedAt() {
+        return parkedAt;
+    }
+
+    public void recordFailure(String error) {
+        this.attempts++;
+        this.lastError = error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+
+    public void retryAt(LocalDateTime nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public void park(LocalDateTime parkedAt) {
+        this.parkedAt = parkedAt;
+    }
+}
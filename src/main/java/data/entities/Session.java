@@ -2,6 +2,7 @@ package data.entities;
 
 import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
 import jakarta.persistence.*;
+import org.hibernate.annotations.UuidGenerator;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -9,11 +10,16 @@ import java.util.List;
 import java.util.UUID;
 
 @Entity
-@Table(name = "sessions")
+@Table(name = "sessions", indexes = {
+        @Index(name = "idx_sessions_sender_receiver", columnList = "sender_id, receiver_id"),
+        @Index(name = "idx_sessions_sender_activity", columnList = "sender_id, last_activity"),
+        @Index(name = "idx_sessions_receiver_activity", columnList = "receiver_id, last_activity")
+})
 public class Session extends PanacheEntityBase {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @GeneratedValue
+    @UuidGenerator(style = UuidGenerator.Style.VERSION_7)
     @Column(name = "session_id", nullable = false)
     private UUID sessionId;
 
@@ -29,6 +35,27 @@ public class Session extends PanacheEntityBase {
     @Column(name = "creation_date", nullable = false)
     private LocalDateTime creationDate;
 
+    // Summary of the message history, maintained by MessageService in the writing transaction
+    @Column(name = "message_count", nullable = false)
+    private long messageCount;
+
+    @Column(name = "last_message_id")
+    private UUID lastMessageId;
+
+    @Column(name = "last_message_preview", length = 255)
+    private String lastMessagePreview;
+
+    @Column(name = "last_activity", nullable = false)
+    private LocalDateTime lastActivity;
+
+    // Sequence number of the session's latest message event; unlike the count it never decreases
+    @Column(name = "event_sequence", nullable = false)
+    private long eventSequence;
+
+    // Bumped by every change to the session or its messages; the basis of its ETag
+    @Column(name = "revision", nullable = false)
+    private long revision;
+
     @OneToMany(
             mappedBy = "session",
             cascade = CascadeType.ALL,
@@ -44,6 +71,7 @@ public class Session extends PanacheEntityBase {
         this.receiverId = receiverId;
         this.subject = subject;
         this.creationDate = creationDate;
+        this.lastActivity = creationDate;
     }
 
     public UUID getSessionId() { return sessionId; }
@@ -51,6 +79,12 @@ public class Session extends PanacheEntityBase {
     public UUID getReceiverId() { return receiverId; }
     public String getSubject() { return subject; }
     public LocalDateTime getCreationDate() { return creationDate; }
+    public long getMessageCount() { return messageCount; }
+    public UUID getLastMessageId() { return lastMessageId; }
+    public String getLastMessagePreview() { return lastMessagePreview; }
+    public LocalDateTime getLastActivity() { return lastActivity; }
+    public long getEventSequence() { return eventSequence; }
+    public long getRevision() { return revision; }
     public List<Message> getMessages() { return messages; }
     public void setMessages(List<Message> messages) { this.messages = messages; }
 
@@ -0,0 +1,58 @@
+package data.entities;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+import org.hibernate.annotations.UuidGenerator;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/** A background session delete; see core.services.SessionDeletionJobs */
+@Entity
+@Table(name = "session_deletion_jobs", indexes = {
+        @Index(name = "idx_session_deletion_jobs_session", columnList = "session_id, status")
+})
+public class SessionDeletionJob extends PanacheEntityBase {
+
+    @Id
+    @GeneratedValue
+    @UuidGenerator(style = UuidGenerator.Style.VERSION_7)
+    @Column(name = "job_id")
+    private UUID jobId;
+
+    @Column(name = "session_id", nullable = false)
+    private UUID sessionId;
+
+    @Column(nullable = false, length = 16)
+    private String status;
+
+    @Column(name = "deleted_messages", nullable = false)
+    private long deletedMessages;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    // Moves with every chunk deleted, so a job whose node died can be told from a slow one
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    public SessionDeletionJob() {}
+
+    public SessionDeletionJob(UUID sessionId, String status) {
+        this.sessionId = sessionId;
+        this.status = status;
+        this.startedAt = LocalDateTime.now();
+        this.updatedAt = startedAt;
+    }
+
+    public UUID getJobId() { return jobId; }
+    public UUID getSessionId() { return sessionId; }
+    public String getStatus() { return status; }
+    public long getDeletedMessages() { return deletedMessages; }
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public LocalDateTime getFinishedAt() { return finishedAt; }
+}
@@ -3,6 +3,7 @@ package data.entities;
 import core.enums.OrganizationType;
 import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
 import jakarta.persistence.*;
+import org.hibernate.annotations.UuidGenerator;
 import core.enums.UserType;
 
 import java.util.List;
@@ -14,7 +15,8 @@ import java.util.UUID;
 @DiscriminatorColumn(name = "user_role")
 public class User extends PanacheEntityBase {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @GeneratedValue
+    @UuidGenerator(style = UuidGenerator.Style.VERSION_7)
     @Column(name = "user_id", nullable = false)
     private UUID id;
 
@@ -0,0 +1,99 @@
+package data.repositories;
+
+import api.dto.MessageDTO;
+import core.metrics.Measured;
+import data.entities.ArchivedMessage;
+import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.jpa.HibernateHints;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * The archived part of message histories. Reads mirror the projected reads of
+ * {@link MessageRepository}, so callers can merge them with the live table.
+ */
+@Measured
+@ApplicationScoped
+public class ArchivedMessageRepository implements PanacheRepositoryBase<ArchivedMessage, UUID> {
+
+    @ConfigProperty(name = MessageRepository.STREAM_FETCH_SIZE, defaultValue = "500")
+    int streamFetchSize;
+
+    /** Copies the given messages into the archive; the caller deletes them from messages */
+    public int copyFromMessages(Collection<UUID> messageIds, LocalDateTime archivedAt) {
+        return getEntityManager().createQuery("""
+                    INSERT INTO ArchivedMessage (messageId, sessionId, senderId, message, dateTime, archivedAt)
+                    SELECT m.messageId, m.sessionId, m.senderId, m.message, m.dateTime, ?2
+                    FROM Message m WHERE m.messageId IN ?1
+                """)
+                .setParameter(1, messageIds)
+                .setParameter(2, archivedAt)
+                .executeUpdate();
+    }
+
+    public MessageDTO findMessage(UUID messageId) {
+        return find("messageId", messageId)
+                .project(MessageDTO.class)
+                .firstResult();
+    }
+
+    public List<MessageDTO> findMessages(Collection<UUID> messageIds) {
+        return find("messageId in ?1", messageIds)
+                .project(MessageDTO.class)
+                .list();
+    }
+
+    public List<MessageDTO> findBySessionId(UUID sessionId) {
+        return find("sessionId = ?1 order by dateTime asc, messageId asc", sessionId)
+                .project(MessageDTO.class)
+                .list();
+    }
+
+    public List<MessageDTO> findBySessionIds(Collection<UUID> sessionIds) {
+        return find("sessionId in ?1 order by dateTime asc, messageId asc", sessionIds)
+                .project(MessageDTO.class)
+                .list();
+    }
+
+    /** Cursor over the archived history, oldest first; close it, inside a transaction */
+    public Stream<MessageDTO> streamBySessionId(UUID sessionId) {
+        return find("sessionId = ?1 order by dateTime asc, messageId asc", sessionId)
+                .project(MessageDTO.class)
+                .withHint(HibernateHints.HINT_FETCH_SIZE, streamFetchSize)
+                .stream();
+    }
+
+    public List<MessageDTO> findLatestSessionMessages(UUID sessionId, int limit) {
+        return find("sessionId = ?1 order by dateTime desc, messageId desc", sessionId)
+                .project(MessageDTO.class)
+                .page(0, limit)
+                .list();
+    }
+
+    public List<MessageDTO> findSessionMessagesBefore(UUID sessionId, LocalDateTime dateTime, UUID messageId, int limit) {
+        return find("sessionId = ?1 and (dateTime < ?2 or (dateTime = ?2 and messageId < ?3)) order by dateTime desc, messageId desc",
+                sessionId, dateTime, messageId)
+                .project(MessageDTO.class)
+                .page(0, limit)
+                .list();
+    }
+
+    public List<MessageDTO> findSessionMessagesAfter(UUID sessionId, LocalDateTime dateTime, UUID messageId, int limit) {
+        return find("sessionId = ?1 and (dateTime > ?2 or (dateTime = ?2 and messageId > ?3)) order by dateTime asc, messageId asc",
+                sessionId, dateTime, messageId)
+                .project(MessageDTO.class)
+                .page(0, limit)
+                .list();
+    }
+
+    /** Bulk delete; nothing is loaded */
+    public long deleteBySessionId(UUID sessionId) {
+        return delete("sessionId", sessionId);
+    }
+}
@@ -0,0 +1,22 @@
+package data.repositories;
+
+import core.metrics.Measured;
+import data.entities.JobLease;
+import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.time.LocalDateTime;
+
+@Measured
+@ApplicationScoped
+public class JobLeaseRepository implements PanacheRepositoryBase<JobLease, String> {
+
+    /**
+     * Gives the lease to {@code owner} until {@code until} if it already holds it or the lease
+     * has expired. One conditional update, so of two nodes racing for it only one wins.
+     */
+    public int extend(String name, String owner, LocalDateTime now, LocalDateTime until) {
+        return update("owner = ?2, expiresAt = ?4 where name = ?1 and (owner = ?2 or expiresAt <= ?3)",
+                name, owner, now, until);
+    }
+}
@@ -0,0 +1,76 @@
+package data.repositories;
+
+import core.archive.MessagePartitions;
+import core.archive.MessagePartitions.Partition;
+import core.metrics.Measured;
+import io.agroal.api.AgroalDataSource;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The MySQL partitions of {@code messages}, through plain JDBC: partition DDL commits
+ * implicitly, so it has no place in a JTA transaction.
+ */
+@Measured
+@ApplicationScoped
+public class MessagePartitionRepository {
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    /** Partitions in bound order; empty when messages is not partitioned */
+    public List<Partition> findPartitions() {
+        String sql = """
+                SELECT partition_name, partition_description FROM information_schema.partitions
+                WHERE table_schema = DATABASE() AND table_name = 'messages' AND partition_name IS NOT NULL
+                ORDER BY partition_ordinal_position""";
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery(sql)) {
+            List<Partition> partitions = new ArrayList<>();
+            while (rows.next()) {
+                partitions.add(Partition.parse(rows.getString(1), rows.getString(2)));
+            }
+            return partitions;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to read the message partitions", e);
+        }
+    }
+
+    public boolean isEmpty(Partition partition) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT 1 FROM messages PARTITION (" + partition.getName() + ") LIMIT 1");
+             ResultSet rows = statement.executeQuery()) {
+            return !rows.next();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to read message partition " + partition.getName(), e);
+        }
+    }
+
+    /** Splits the given months off p_future, which keeps everything after them */
+    public void addPartitions(List<Partition> added) {
+        execute(MessagePartitions.reorganizeFuture(added));
+    }
+
+    public void dropPartition(Partition partition) {
+        execute(MessagePartitions.drop(partition));
+    }
+
+    private void execute(String ddl) {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(ddl);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to change the message partitions: " + ddl, e);
+        }
+    }
+}
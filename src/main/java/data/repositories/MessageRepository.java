@@ -1,19 +1,113 @@
 package data.repositories;
 
+import api.dto.MessageDTO;
+import core.metrics.Measured;
 import data.entities.Message;
 import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.persistence.LockModeType;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.LockOptions;
+import org.hibernate.jpa.HibernateHints;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
+@Measured
 @ApplicationScoped
 public class MessageRepository implements PanacheRepositoryBase<Message, UUID> {
 
+    /**
+     * Fetch size of the streamed reads only. On MySQL it is Integer.MIN_VALUE, which makes
+     * Connector/J stream the result set row by row instead of reading it all into memory;
+     * every other query keeps the driver's default. A streamed result set must be read to
+     * the end or closed before its connection runs another statement.
+     */
+    public static final String STREAM_FETCH_SIZE = "message-stream.fetch-size";
+
+    @ConfigProperty(name = STREAM_FETCH_SIZE, defaultValue = "500")
+    int streamFetchSize;
+
     public List<Message> findBySessionId(UUID sessionId) {
-        return find("sessionId", sessionId).list();
+        return find("sessionId = ?1 order by dateTime asc, messageId asc", sessionId).list();
+    }
+
+    /**
+     * Cursor over a session's history, oldest first, projected so the persistence context
+     * holds nothing however long the history is. Read it inside a transaction and close it.
+     */
+    public Stream<MessageDTO> streamBySessionId(UUID sessionId) {
+        return find("sessionId = ?1 order by dateTime asc, messageId asc", sessionId)
+                .project(MessageDTO.class)
+                .withHint(HibernateHints.HINT_FETCH_SIZE, streamFetchSize)
+                .stream();
+    }
+
+    /**
+     * One cursor over the histories of many sessions, most recently active session first and
+     * each history oldest first, so a caller can split it by session while reading. The archived
+     * messages of {@code archivedSessionIds} are merged in, in the same order. Read it inside a
+     * transaction, whose snapshot keeps the session order the same as the caller's, and close it.
+     */
+    public Stream<MessageDTO> streamBySessionIdsByActivity(Collection<UUID> sessionIds, Collection<UUID> archivedSessionIds) {
+        String live = "SELECT m.messageId AS messageId, m.sessionId AS sessionId, m.senderId, m.message, m.dateTime AS dateTime,"
+                + " s.lastActivity AS lastActivity FROM Message m JOIN m.session s WHERE m.sessionId IN ?1";
+        String archived = " UNION ALL SELECT a.messageId, a.sessionId, a.senderId, a.message, a.dateTime, s.lastActivity"
+                + " FROM ArchivedMessage a JOIN Session s ON s.sessionId = a.sessionId WHERE a.sessionId IN ?2";
+        String order = " ORDER BY lastActivity DESC, sessionId, dateTime, messageId";
+        var query = getEntityManager()
+                .createQuery(archivedSessionIds.isEmpty() ? live + order : live + archived + order, Object[].class)
+                .setParameter(1, sessionIds)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, streamFetchSize);
+        if (!archivedSessionIds.isEmpty()) {
+            query.setParameter(2, archivedSessionIds);
+        }
+        return query.getResultStream()
+                .map(row -> new MessageDTO((UUID) row[0], (UUID) row[1], (UUID) row[2], (String) row[3], (LocalDateTime) row[4]));
+    }
+
+    /** IDs of the session's oldest messages, for deleting a long history in chunks */
+    public List<UUID> findOldestIdsBySessionId(UUID sessionId, int limit) {
+        return getEntityManager()
+                .createQuery("SELECT m.messageId FROM Message m WHERE m.sessionId = ?1 ORDER BY m.dateTime, m.messageId",
+                        UUID.class)
+                .setParameter(1, sessionId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * IDs of the session's oldest messages written before {@code cutoff}, for archiving in
+     * batches. The rows stay locked until commit; rows locked by another archiver are skipped.
+     */
+    public List<UUID> lockIdsBefore(UUID sessionId, LocalDateTime cutoff, int limit) {
+        return getEntityManager()
+                .createQuery("SELECT m.messageId FROM Message m WHERE m.sessionId = ?1 AND m.dateTime < ?2 ORDER BY m.dateTime, m.messageId",
+                        UUID.class)
+                .setParameter(1, sessionId)
+                .setParameter(2, cutoff)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .setHint("jakarta.persistence.lock.timeout", LockOptions.SKIP_LOCKED)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /** Bulk delete; nothing is loaded */
+    public long deleteByIds(Collection<UUID> messageIds) {
+        return delete("messageId in ?1", messageIds);
+    }
+
+    /** Bulk delete; nothing is loaded */
+    public long deleteBySessionId(UUID sessionId) {
+        return delete("sessionId", sessionId);
+    }
+
+    public List<Message> findBySessionIds(Collection<UUID> sessionIds) {
+        return find("sessionId in ?1 order by dateTime asc, messageId asc", sessionIds).list();
     }
 
     public List<Message> findBySenderId(UUID senderId) {
@@ -30,6 +124,86 @@ public class MessageRepository implements PanacheRepositoryBase<Message, UUID> {
                 .list();
     }
 
+    public List<Message> findLatestSessionMessages(UUID sessionId, int limit) {
+        return find("sessionId = ?1 order by dateTime desc, messageId desc", sessionId)
+                .page(0, limit)
+                .list();
+    }
+
+    // The plain dateTime bound is implied by the keyset condition, but stated on its own it
+    // lets MySQL prune the monthly partitions of messages; see MessagePartitionMaintainer
+    public List<Message> findSessionMessagesBefore(UUID sessionId, LocalDateTime dateTime, UUID messageId, int limit) {
+        return find("sessionId = ?1 and dateTime <= ?2 and (dateTime < ?2 or (dateTime = ?2 and messageId < ?3)) order by dateTime desc, messageId desc",
+                sessionId, dateTime, messageId)
+                .page(0, limit)
+                .list();
+    }
+
+    public List<Message> findSessionMessagesAfter(UUID sessionId, LocalDateTime dateTime, UUID messageId, int limit) {
+        return find("sessionId = ?1 and dateTime >= ?2 and (dateTime > ?2 or (dateTime = ?2 and messageId > ?3)) order by dateTime asc, messageId asc",
+                sessionId, dateTime, messageId)
+                .page(0, limit)
+                .list();
+    }
+
+    // The AsDTO reads select the DTO columns straight into MessageDTO: the read endpoints get
+    // no managed entities, so there are no snapshots to keep and nothing to dirty-check
+
+    // With partitioned messages a lookup by ID alone reads every partition, as the primary key
+    // is (message_id, date_time); give the message's time where it is known
+    public MessageDTO findByIdAsDTO(UUID messageId) {
+        return find("messageId", messageId)
+                .project(MessageDTO.class)
+                .firstResult();
+    }
+
+    public MessageDTO findByIdAsDTO(UUID messageId, LocalDateTime dateTime) {
+        return find("messageId = ?1 and dateTime = ?2", messageId, dateTime)
+                .project(MessageDTO.class)
+                .firstResult();
+    }
+
+    public List<MessageDTO> findByIdsAsDTO(Collection<UUID> messageIds) {
+        return find("messageId in ?1", messageIds)
+                .project(MessageDTO.class)
+                .list();
+    }
+
+    public List<MessageDTO> findBySessionIdAsDTO(UUID sessionId) {
+        return find("sessionId = ?1 order by dateTime asc, messageId asc", sessionId)
+                .project(MessageDTO.class)
+                .list();
+    }
+
+    public List<MessageDTO> findBySessionIdsAsDTO(Collection<UUID> sessionIds) {
+        return find("sessionId in ?1 order by dateTime asc, messageId asc", sessionIds)
+                .project(MessageDTO.class)
+                .list();
+    }
+
+    public List<MessageDTO> findLatestSessionMessagesAsDTO(UUID sessionId, int limit) {
+        return find("sessionId = ?1 order by dateTime desc, messageId desc", sessionId)
+                .project(MessageDTO.class)
+                .page(0, limit)
+                .list();
+    }
+
+    public List<MessageDTO> findSessionMessagesBeforeAsDTO(UUID sessionId, LocalDateTime dateTime, UUID messageId, int limit) {
+        return find("sessionId = ?1 and dateTime <= ?2 and (dateTime < ?2 or (dateTime = ?2 and messageId < ?3)) order by dateTime desc, messageId desc",
+                sessionId, dateTime, messageId)
+                .project(MessageDTO.class)
+                .page(0, limit)
+                .list();
+    }
+
+    public List<MessageDTO> findSessionMessagesAfterAsDTO(UUID sessionId, LocalDateTime dateTime, UUID messageId, int limit) {
+        return find("sessionId = ?1 and dateTime >= ?2 and (dateTime > ?2 or (dateTime = ?2 and messageId > ?3)) order by dateTime asc, messageId asc",
+                sessionId, dateTime, messageId)
+                .project(MessageDTO.class)
+                .page(0, limit)
+                .list();
+    }
+
     public Long countBySession(UUID sessionId) {
         return count("sessionId", sessionId);
     }
@@ -88,4 +262,25 @@ public class MessageRepository implements PanacheRepositoryBase<Message, UUID> {
             """, sessionId)
                 .firstResult();
     }
+
+    /** Batch of messages with their session, in (dateTime, messageId) order, starting after the given position */
+    public List<Message> findIndexBatchWithRelations(LocalDateTime fromDateTime, UUID afterMessageId, int limit) {
+        if (fromDateTime == null) {
+            return find("""
+                    SELECT m FROM Message m
+                    LEFT JOIN FETCH m.session
+                    ORDER BY m.dateTime, m.messageId
+                """)
+                    .page(0, limit)
+                    .list();
+        }
+        return find("""
+                SELECT m FROM Message m
+                LEFT JOIN FETCH m.session
+                WHERE m.dateTime >= ?1 AND (m.dateTime > ?1 OR (m.dateTime = ?1 AND m.messageId > ?2))
+                ORDER BY m.dateTime, m.messageId
+            """, fromDateTime, afterMessageId)
+                .page(0, limit)
+                .list();
+    }
 }
@@ -0,0 +1,80 @@
+package data.repositories;
+
+import core.metrics.Measured;
+import data.entities.OutboxEvent;
+import io.quarkus.hibernate.orm.panache.PanacheQuery;
+import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.persistence.LockModeType;
+import org.hibernate.LockOptions;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@Measured
+@ApplicationScoped
+public class OutboxRepository implements PanacheRepositoryBase<OutboxEvent, UUID> {
+
+    /**
+     * Locks the oldest events that are due for the current transaction, leaving out the
+     * sessions in {@code blockedSessionIds}. Events waiting out a backoff, claimed by a relay
+     * or parked are not due, so they never hold up the rest. Rows already locked by another
+     * relay are skipped.
+     */
+    public List<OutboxEvent> lockDue(LocalDateTime now, Collection<UUID> blockedSessionIds, int limit) {
+        PanacheQuery<OutboxEvent> query = blockedSessionIds.isEmpty()
+                ? find("parkedAt is null and nextAttemptAt <= ?1 order by eventId", now)
+                : find("parkedAt is null and nextAttemptAt <= ?1 and sessionId not in ?2 order by eventId", now, blockedSessionIds);
+        return query
+                .withLock(LockModeType.PESSIMISTIC_WRITE)
+                .withHint("jakarta.persistence.lock.timeout", LockOptions.SKIP_LOCKED)
+                .page(0, limit)
+                .list();
+    }
+
+    /**
+     * Sessions with an unparked event that is not due: it is waiting out a backoff or claimed
+     * by a relay, and the session's later events have to wait for it.
+     */
+    public List<UUID> findBlockedSessionIds(LocalDateTime now) {
+        return getEntityManager()
+                .createQuery("SELECT DISTINCT e.sessionId FROM OutboxEvent e WHERE e.parkedAt IS NULL AND e.nextAttemptAt > ?1",
+                        UUID.class)
+                .setParameter(1, now)
+                .getResultList();
+    }
+
+    /**
+     * The lowest sequence number among the unparked events of each session, leaving out
+     * {@code eventIds}. An event whose session has a lower one still pending must wait for it.
+     */
+    public Map<UUID, Long> findEarliestPendingSequences(Collection<UUID> sessionIds, Collection<UUID> eventIds) {
+        return getEntityManager()
+                .createQuery("""
+                    SELECT e.sessionId, MIN(e.sequence) FROM OutboxEvent e
+                    WHERE e.sessionId IN ?1 AND e.parkedAt IS NULL AND e.eventId NOT IN ?2
+                    GROUP BY e.sessionId
+                """, Object[].class)
+                .setParameter(1, sessionIds)
+                .setParameter(2, eventIds)
+                .getResultStream()
+                .collect(Collectors.toMap(row -> (UUID) row[0], row -> (Long) row[1]));
+    }
+
+    /**
+     * Sets when the events are due next. A relay claims events by moving it past the time it
+     * may need to send them, so it can commit and wait for Kafka without holding their row
+     * locks, and hands events back by moving it to now.
+     */
+    public int scheduleAt(Collection<UUID> eventIds, LocalDateTime nextAttemptAt) {
+        return update("nextAttemptAt = ?1 where eventId in ?2", nextAttemptAt, eventIds);
+    }
+
+    public long deleteByIds(Collection<UUID> eventIds) {
+        return delete("eventId in ?1", eventIds);
+    }
+}
@@ -0,0 +1,38 @@
+package data.repositories;
+
+import core.metrics.Measured;
+import data.entities.SessionDeletionJob;
+import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Measured
+@ApplicationScoped
+public class SessionDeletionJobRepository implements PanacheRepositoryBase<SessionDeletionJob, UUID> {
+
+    /** A job with {@code status} deleting the session that has moved since {@code activeSince} */
+    public SessionDeletionJob findActive(UUID sessionId, String status, LocalDateTime activeSince) {
+        return find("sessionId = ?1 and status = ?2 and updatedAt >= ?3 order by startedAt desc",
+                sessionId, status, activeSince)
+                .firstResult();
+    }
+
+    public int addDeletedMessages(UUID jobId, long count, LocalDateTime now) {
+        return update("deletedMessages = deletedMessages + ?2, updatedAt = ?3 where jobId = ?1", jobId, count, now);
+    }
+
+    public int finish(UUID jobId, String status, LocalDateTime now) {
+        return update("status = ?2, updatedAt = ?3, finishedAt = ?3 where jobId = ?1", jobId, status, now);
+    }
+
+    /** Finishes the jobs with {@code status} that have not moved since {@code cutoff} as {@code outcome} */
+    public int finishStale(String status, LocalDateTime cutoff, String outcome, LocalDateTime now) {
+        return update("status = ?3, finishedAt = ?4 where status = ?1 and updatedAt < ?2", status, cutoff, outcome, now);
+    }
+
+    public long deleteFinishedBefore(LocalDateTime cutoff) {
+        return delete("finishedAt < ?1", cutoff);
+    }
+}
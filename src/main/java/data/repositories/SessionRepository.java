@@ -1,12 +1,20 @@
 package data.repositories;
 
+import api.dto.SessionDTO;
+import core.metrics.Measured;
 import data.entities.Session;
 import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.persistence.LockModeType;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.UUID;
 
+@Measured
 @ApplicationScoped
 public class SessionRepository implements PanacheRepositoryBase<Session, UUID> {
 
@@ -18,9 +26,13 @@ public class SessionRepository implements PanacheRepositoryBase<Session, UUID> {
         return find("receiverId", receiverId).list();
     }
 
+    // OR across two columns defeats single-index plans, so each direction is its own indexed lookup
     public List<Session> findSessionsBetweenUsers(UUID userId1, UUID userId2) {
-        return find("(senderId = ?1 and receiverId = ?2) or (senderId = ?2 and receiverId = ?1)",
-                userId1, userId2).list();
+        return find("""
+                SELECT s FROM Session s WHERE s.senderId = ?1 AND s.receiverId = ?2
+                UNION
+                SELECT s FROM Session s WHERE s.senderId = ?2 AND s.receiverId = ?1
+            """, userId1, userId2).list();
     }
 
     public List<Session> searchBySubject(String subjectPattern) {
@@ -28,11 +40,180 @@ public class SessionRepository implements PanacheRepositoryBase<Session, UUID> {
     }
 
     public List<Session> findAllUserSessions(UUID userId) {
-        return find("senderId = ?1 or receiverId = ?1", userId).list();
+        return find("""
+                SELECT s FROM Session s WHERE s.senderId = ?1
+                UNION
+                SELECT s FROM Session s WHERE s.receiverId = ?1
+            """, userId).list();
+    }
+
+    /** The user's most recently active sessions, newest first, read from the session summary only */
+    public List<Session> findUserSessionsByActivity(UUID userId, int limit) {
+        List<Session> sessions = new ArrayList<>(find("senderId = ?1 order by lastActivity desc", userId)
+                .page(0, limit)
+                .list());
+        sessions.addAll(find("receiverId = ?1 and senderId <> ?1 order by lastActivity desc", userId)
+                .page(0, limit)
+                .list());
+        sessions.sort(Comparator.comparing(Session::getLastActivity).reversed());
+        return sessions.size() > limit ? sessions.subList(0, limit) : sessions;
+    }
+
+    // The AsDTO reads project the session summary into SessionDTO without managing a Session.
+    // A UNION cannot select new, so those select the summary columns into the DTO constructor.
+    private static final String SUMMARY_COLUMNS = "s.sessionId, s.subject, s.creationDate, s.senderId, s.receiverId, "
+            + "s.messageCount, s.lastMessageId, s.lastMessagePreview, s.lastActivity";
+
+    public SessionDTO findByIdAsDTO(UUID sessionId) {
+        return find("sessionId", sessionId)
+                .project(SessionDTO.class)
+                .firstResult();
+    }
+
+    public List<SessionDTO> findAllUserSessionsAsDTO(UUID userId) {
+        return new ArrayList<>(getEntityManager()
+                .createQuery("SELECT " + SUMMARY_COLUMNS + " FROM Session s WHERE s.senderId = ?1"
+                        + " UNION SELECT " + SUMMARY_COLUMNS + " FROM Session s WHERE s.receiverId = ?1", SessionDTO.class)
+                .setParameter(1, userId)
+                .getResultList());
+    }
+
+    public List<SessionDTO> findSessionsBetweenUsersAsDTO(UUID userId1, UUID userId2) {
+        return new ArrayList<>(getEntityManager()
+                .createQuery("SELECT " + SUMMARY_COLUMNS + " FROM Session s WHERE s.senderId = ?1 AND s.receiverId = ?2"
+                        + " UNION SELECT " + SUMMARY_COLUMNS + " FROM Session s WHERE s.senderId = ?2 AND s.receiverId = ?1", SessionDTO.class)
+                .setParameter(1, userId1)
+                .setParameter(2, userId2)
+                .getResultList());
+    }
+
+    public List<SessionDTO> searchBySubjectAsDTO(String subjectPattern) {
+        return find("subject like ?1", "%" + subjectPattern + "%")
+                .project(SessionDTO.class)
+                .list();
+    }
+
+    public List<SessionDTO> findUserSessionsByActivityAsDTO(UUID userId, int limit) {
+        List<SessionDTO> sessions = new ArrayList<>(find("senderId = ?1 order by lastActivity desc", userId)
+                .project(SessionDTO.class)
+                .page(0, limit)
+                .list());
+        sessions.addAll(find("receiverId = ?1 and senderId <> ?1 order by lastActivity desc", userId)
+                .project(SessionDTO.class)
+                .page(0, limit)
+                .list());
+        sessions.sort(Comparator.comparing((SessionDTO session) -> session.lastActivity).reversed());
+        return sessions.size() > limit ? sessions.subList(0, limit) : sessions;
+    }
+
+    /**
+     * Counts a new message and makes it the session's last message unless a newer one
+     * was already recorded. last_activity is assigned last because MySQL evaluates
+     * SET assignments left to right.
+     */
+    public int recordMessageAdded(UUID sessionId, UUID messageId, String preview, LocalDateTime dateTime) {
+        return recordMessagesAdded(sessionId, 1, messageId, preview, dateTime);
+    }
+
+    /**
+     * Counts {@code count} new messages, the newest of which is given, and reserves as many
+     * event sequence numbers. The row stays locked until commit, so concurrent writers to the
+     * session get consecutive ranges; {@link #findEventSequence} returns the end of this one.
+     */
+    public int recordMessagesAdded(UUID sessionId, long count, UUID messageId, String preview, LocalDateTime dateTime) {
+        return update("""
+                UPDATE Session s SET
+                    s.messageCount = s.messageCount + ?5,
+                    s.eventSequence = s.eventSequence + ?5,
+                    s.revision = s.revision + 1,
+                    s.lastMessageId = CASE WHEN s.lastActivity <= ?3 THEN ?2 ELSE s.lastMessageId END,
+                    s.lastMessagePreview = CASE WHEN s.lastActivity <= ?3 THEN ?4 ELSE s.lastMessagePreview END,
+                    s.lastActivity = CASE WHEN s.lastActivity <= ?3 THEN ?3 ELSE s.lastActivity END
+                WHERE s.sessionId = ?1
+            """, sessionId, messageId, dateTime, preview, count);
+    }
+
+    public long findEventSequence(UUID sessionId) {
+        return getEntityManager()
+                .createQuery("SELECT s.eventSequence FROM Session s WHERE s.sessionId = ?1", Long.class)
+                .setParameter(1, sessionId)
+                .getSingleResult();
+    }
+
+    /** A page of IDs of sessions created before {@code cutoff}, in ID order after {@code afterId} */
+    public List<UUID> findIdsCreatedBefore(LocalDateTime cutoff, UUID afterId, int limit) {
+        return getEntityManager()
+                .createQuery("SELECT s.sessionId FROM Session s WHERE s.creationDate < ?1 AND s.sessionId > ?2 ORDER BY s.sessionId",
+                        UUID.class)
+                .setParameter(1, cutoff)
+                .setParameter(2, afterId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /** The session's revision, or null if there is no such session */
+    public Long findRevision(UUID sessionId) {
+        return getEntityManager()
+                .createQuery("SELECT s.revision FROM Session s WHERE s.sessionId = ?1", Long.class)
+                .setParameter(1, sessionId)
+                .getResultStream()
+                .findFirst()
+                .orElse(null);
+    }
+
+    /** ID and revision of each of the user's sessions, without loading the sessions */
+    public List<Object[]> findUserSessionRevisions(UUID userId) {
+        return getEntityManager()
+                .createQuery("""
+                    SELECT s.sessionId, s.revision FROM Session s WHERE s.senderId = ?1
+                    UNION
+                    SELECT s.sessionId, s.revision FROM Session s WHERE s.receiverId = ?1
+                """, Object[].class)
+                .setParameter(1, userId)
+                .getResultList();
+    }
+
+    public int recordMessageRemoved(UUID sessionId) {
+        return recordMessagesRemoved(sessionId, 1);
+    }
+
+    /** Uncounts {@code count} removed messages; the last message is the caller's concern */
+    public int recordMessagesRemoved(UUID sessionId, long count) {
+        return update("""
+                UPDATE Session s SET
+                    s.messageCount = CASE WHEN s.messageCount > ?2 THEN s.messageCount - ?2 ELSE 0 END,
+                    s.revision = s.revision + 1
+                WHERE s.sessionId = ?1
+            """, sessionId, count);
+    }
+
+    /** Loads the session and locks its row until commit, which also blocks new messages in it */
+    public Session findByIdForUpdate(UUID sessionId) {
+        return findById(sessionId, LockModeType.PESSIMISTIC_WRITE);
+    }
+
+    /**
+     * Bulk delete of the session row alone. Unlike {@code delete(session)} it does not cascade,
+     * so the messages must already be gone.
+     */
+    public boolean deleteRow(UUID sessionId) {
+        return delete("sessionId", sessionId) > 0;
+    }
+
+    /** Replaces the last-message fields, e.g. after the previous last message was deleted */
+    public int updateLastMessage(UUID sessionId, UUID messageId, String preview, LocalDateTime lastActivity) {
+        return update("""
+                UPDATE Session s SET
+                    s.lastMessageId = ?2,
+                    s.lastMessagePreview = ?3,
+                    s.lastActivity = ?4
+                WHERE s.sessionId = ?1
+            """, sessionId, messageId, preview, lastActivity);
     }
 
     public Long countUserSessions(UUID userId) {
-        return count("senderId = ?1 or receiverId = ?1", userId);
+        // Sessions a user opened with themselves match both lookups and are counted once
+        return count("senderId", userId) + count("receiverId = ?1 and senderId <> ?1", userId);
     }
 
     public List<Session> findSessionsWithPagination(UUID userId, int pageIndex, int pageSize) {
@@ -75,7 +256,11 @@ public class SessionRepository implements PanacheRepositoryBase<Session, UUID> {
                 SELECT DISTINCT s
                 FROM Session s
                 LEFT JOIN FETCH s.messages
-                WHERE s.senderId = ?1 OR s.receiverId = ?1
+                WHERE s.sessionId IN (
+                    SELECT x.sessionId FROM Session x WHERE x.senderId = ?1
+                    UNION
+                    SELECT y.sessionId FROM Session y WHERE y.receiverId = ?1
+                )
             """, userId)
                 .list();
     }
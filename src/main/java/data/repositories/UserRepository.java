@@ -1,12 +1,15 @@
 package data.repositories;
 
+import core.metrics.Measured;
 import data.entities.User;
 import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
+@Measured
 @ApplicationScoped
 public class UserRepository implements PanacheRepositoryBase<User, UUID> {
 
@@ -18,6 +21,13 @@ public class UserRepository implements PanacheRepositoryBase<User, UUID> {
         return find("fullName", fullName).firstResult();
     }
 
+    public List<UUID> findExistingIds(Collection<UUID> ids) {
+        return getEntityManager()
+                .createQuery("select u.id from User u where u.id in :ids", UUID.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
     public List<User> listAllUsers(int pageIndex, int pageSize) {
         return findAll().page(pageIndex, pageSize).list();
     }
@@ -0,0 +1,38 @@
+--liquibase formatted sql
+
+-- Schema as it existed before versioned migrations were introduced.
+-- Databases that already have it are marked as migrated instead of running it.
+
+--changeset messageservice:001-baseline-schema
+--preconditions onFail:MARK_RAN
+--precondition-sql-check expectedResult:0 SELECT COUNT(*) FROM information_schema.tables WHERE table_schema = DATABASE() AND table_name = 'messages'
+CREATE TABLE users (
+    user_id   BINARY(16)   NOT NULL,
+    user_role VARCHAR(31)  NOT NULL,
+    full_name VARCHAR(255) NOT NULL,
+    email     VARCHAR(255) NOT NULL,
+    password  VARCHAR(255) NOT NULL,
+    user_type ENUM ('Doctor', 'OtherStaff', 'Patient') NOT NULL,
+    PRIMARY KEY (user_id),
+    CONSTRAINT uk_users_email UNIQUE (email)
+) ENGINE = InnoDB;
+
+CREATE TABLE sessions (
+    session_id    BINARY(16)   NOT NULL,
+    sender_id     BINARY(16)   NOT NULL,
+    receiver_id   BINARY(16)   NOT NULL,
+    subject       VARCHAR(255) NOT NULL,
+    creation_date DATETIME(6)  NOT NULL,
+    PRIMARY KEY (session_id)
+) ENGINE = InnoDB;
+
+CREATE TABLE messages (
+    message_id BINARY(16)  NOT NULL,
+    session_id BINARY(16)  NOT NULL,
+    sender_id  BINARY(16)  NOT NULL,
+    message    TEXT        NOT NULL,
+    date_time  DATETIME(6) NOT NULL,
+    PRIMARY KEY (message_id),
+    CONSTRAINT fk_messages_session FOREIGN KEY (session_id) REFERENCES sessions (session_id),
+    CONSTRAINT fk_messages_sender FOREIGN KEY (sender_id) REFERENCES users (user_id)
+) ENGINE = InnoDB;
@@ -0,0 +1,29 @@
+--liquibase formatted sql
+
+-- Indexes for the hot read paths, built online so live traffic keeps writing.
+-- Each changeset is skipped if the index was already added by hand.
+
+-- Session history, latest message and message count: equality on session_id, then
+-- (date_time, message_id) order. Scanned backwards for newest-first reads, so no
+-- separate DESC index is needed.
+--changeset messageservice:002-idx-messages-session-time
+--preconditions onFail:MARK_RAN
+--precondition-sql-check expectedResult:0 SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = 'messages' AND index_name = 'idx_messages_session_time'
+ALTER TABLE messages ADD INDEX idx_messages_session_time (session_id, date_time, message_id), ALGORITHM = INPLACE, LOCK = NONE;
+
+--changeset messageservice:002-idx-messages-sender
+--preconditions onFail:MARK_RAN
+--precondition-sql-check expectedResult:0 SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = 'messages' AND index_name = 'idx_messages_sender'
+ALTER TABLE messages ADD INDEX idx_messages_sender (sender_id), ALGORITHM = INPLACE, LOCK = NONE;
+
+-- Inbox lookups run one indexed branch per column (see SessionRepository);
+-- (sender_id, receiver_id) also serves sessions between two users.
+--changeset messageservice:002-idx-sessions-sender-receiver
+--preconditions onFail:MARK_RAN
+--precondition-sql-check expectedResult:0 SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = 'sessions' AND index_name = 'idx_sessions_sender_receiver'
+ALTER TABLE sessions ADD INDEX idx_sessions_sender_receiver (sender_id, receiver_id), ALGORITHM = INPLACE, LOCK = NONE;
+
+--changeset messageservice:002-idx-sessions-receiver
+--preconditions onFail:MARK_RAN
+--precondition-sql-check expectedResult:0 SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = 'sessions' AND index_name = 'idx_sessions_receiver'
+ALTER TABLE sessions ADD INDEX idx_sessions_receiver (receiver_id), ALGORITHM = INPLACE, LOCK = NONE;
@@ -0,0 +1,38 @@
+--liquibase formatted sql
+
+-- Per-session summary of the message history so that inbox views, the latest message
+-- and the message count can be read without touching the messages table.
+
+--changeset messageservice:003-session-summary-columns
+ALTER TABLE sessions
+    ADD COLUMN message_count        BIGINT       NOT NULL DEFAULT 0,
+    ADD COLUMN last_message_id      BINARY(16)   NULL,
+    ADD COLUMN last_message_preview VARCHAR(255) NULL,
+    ADD COLUMN last_activity        DATETIME(6)  NULL;
+
+--changeset messageservice:003-session-summary-backfill
+UPDATE sessions s
+    LEFT JOIN (SELECT session_id, COUNT(*) AS message_count, MAX(date_time) AS last_activity
+               FROM messages
+               GROUP BY session_id) agg ON agg.session_id = s.session_id
+SET s.message_count = COALESCE(agg.message_count, 0),
+    s.last_activity = COALESCE(agg.last_activity, s.creation_date);
+
+UPDATE sessions s
+    JOIN messages m ON m.message_id = (SELECT m2.message_id
+                                       FROM messages m2
+                                       WHERE m2.session_id = s.session_id
+                                       ORDER BY m2.date_time DESC, m2.message_id DESC
+                                       LIMIT 1)
+SET s.last_message_id = m.message_id,
+    s.last_message_preview = LEFT(m.message, 200);
+
+ALTER TABLE sessions MODIFY COLUMN last_activity DATETIME(6) NOT NULL;
+
+-- Inbox ordering by recent activity; (receiver_id, last_activity) replaces (receiver_id)
+--changeset messageservice:003-session-activity-indexes
+ALTER TABLE sessions
+    ADD INDEX idx_sessions_sender_activity (sender_id, last_activity),
+    ADD INDEX idx_sessions_receiver_activity (receiver_id, last_activity),
+    DROP INDEX idx_sessions_receiver,
+    ALGORITHM = INPLACE, LOCK = NONE;
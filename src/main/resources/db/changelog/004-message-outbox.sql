@@ -0,0 +1,17 @@
+--liquibase formatted sql
+
+-- Events written in the same transaction as the change they describe and relayed to
+-- Kafka afterwards. Time-ordered UUIDv7 keys let the relay read the oldest rows by
+-- primary key.
+
+--changeset messageservice:004-message-outbox
+CREATE TABLE message_outbox (
+    event_id    BINARY(16)  NOT NULL,
+    event_type  VARCHAR(64) NOT NULL,
+    session_id  BINARY(16)  NOT NULL,
+    payload     TEXT        NOT NULL,
+    created_at  DATETIME(6) NOT NULL,
+    attempts    INT         NOT NULL DEFAULT 0,
+    last_error  VARCHAR(512) NULL,
+    PRIMARY KEY (event_id)
+);
@@ -0,0 +1,6 @@
+--liquibase formatted sql
+
+-- Correlation ID of the request that produced an outbox event, sent on as a Kafka header
+
+--changeset messageservice:005-outbox-correlation-id
+ALTER TABLE message_outbox ADD COLUMN correlation_id VARCHAR(64) NULL;
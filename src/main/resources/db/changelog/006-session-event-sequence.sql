@@ -0,0 +1,8 @@
+--liquibase formatted sql
+
+-- Per-session sequence number of message events, so consumers can order a session's
+-- events and notice gaps. Existing sessions continue from their message count.
+
+--changeset messageservice:006-session-event-sequence
+ALTER TABLE sessions ADD COLUMN event_sequence BIGINT NOT NULL DEFAULT 0;
+UPDATE sessions SET event_sequence = message_count;
@@ -0,0 +1,7 @@
+--liquibase formatted sql
+
+-- Revision counter per session, bumped by every message added or removed, so reads can
+-- answer conditional requests from the sessions table alone
+
+--changeset messageservice:007-session-revision
+ALTER TABLE sessions ADD COLUMN revision BIGINT NOT NULL DEFAULT 0;
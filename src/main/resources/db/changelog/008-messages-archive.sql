@@ -0,0 +1,16 @@
+--liquibase formatted sql
+
+-- Messages older than message-archive.max-age, moved out of the messages table by the
+-- archiver so the live table and its indexes stop growing with the whole history
+
+--changeset messageservice:008-messages-archive
+CREATE TABLE messages_archive (
+    message_id  BINARY(16)  NOT NULL,
+    session_id  BINARY(16)  NOT NULL,
+    sender_id   BINARY(16)  NOT NULL,
+    message     TEXT        NOT NULL,
+    date_time   DATETIME(6) NOT NULL,
+    archived_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (message_id),
+    INDEX idx_messages_archive_session_time (session_id, date_time, message_id)
+) ENGINE = InnoDB ROW_FORMAT = COMPRESSED;
@@ -0,0 +1,24 @@
+--liquibase formatted sql
+
+-- Opt-in: only runs in the partitioned context, which the partitioned profile enables.
+-- Partitioned InnoDB tables cannot have foreign keys, and every unique key must contain
+-- the partitioning column, so the primary key gains date_time. Message IDs are generated
+-- by the application and stay unique without the database checking them. A lookup by
+-- message_id alone has to read every partition; queries that know the time should bound it.
+-- Existing history, up to the end of the month the migration runs in, goes to p_history.
+-- The bound is computed when the migration runs, as partition bounds must be literals, so
+-- p_future is empty; MessagePartitionMaintainer, which runs at startup, splits monthly
+-- partitions off it before the next month begins, and so never has to move rows.
+-- Rebuilds the table: run it in a maintenance window.
+
+--changeset messageservice:009-partition-messages context:partitioned
+ALTER TABLE messages DROP FOREIGN KEY fk_messages_session, DROP FOREIGN KEY fk_messages_sender;
+SET @history_bound = DATE_FORMAT(CURRENT_DATE + INTERVAL 1 MONTH, '%Y-%m-01');
+SET @partition_messages = CONCAT(
+    'ALTER TABLE messages DROP PRIMARY KEY, ADD PRIMARY KEY (message_id, date_time) ',
+    'PARTITION BY RANGE COLUMNS (date_time) (',
+    'PARTITION p_history VALUES LESS THAN (''', @history_bound, '''), ',
+    'PARTITION p_future VALUES LESS THAN (MAXVALUE))');
+PREPARE partition_messages FROM @partition_messages;
+EXECUTE partition_messages;
+DEALLOCATE PREPARE partition_messages;
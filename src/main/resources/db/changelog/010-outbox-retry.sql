@@ -0,0 +1,13 @@
+--liquibase formatted sql
+
+-- Retry schedule of outbox events. next_attempt_at is when the relay may pick an event up
+-- next: after a backoff once a send failed, or after the claim of a relay that is still
+-- waiting for Kafka. Events that failed message-outbox.max-attempts times are parked and
+-- left for an operator; clearing parked_at and attempts sends them again.
+
+--changeset messageservice:010-outbox-retry
+ALTER TABLE message_outbox ADD COLUMN next_attempt_at DATETIME(6) NULL;
+UPDATE message_outbox SET next_attempt_at = created_at;
+ALTER TABLE message_outbox MODIFY next_attempt_at DATETIME(6) NOT NULL;
+ALTER TABLE message_outbox ADD COLUMN parked_at DATETIME(6) NULL;
+CREATE INDEX idx_message_outbox_due ON message_outbox (parked_at, next_attempt_at);
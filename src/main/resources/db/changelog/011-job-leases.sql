@@ -0,0 +1,13 @@
+--liquibase formatted sql
+
+-- Time-limited leases that let one node at a time run a cluster-wide job, such as the
+-- outbox relay. A node holds a lease while it keeps renewing it before expires_at.
+
+--changeset messageservice:011-job-leases
+CREATE TABLE job_leases (
+    name       VARCHAR(64) NOT NULL,
+    owner      VARCHAR(64) NOT NULL,
+    expires_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (name)
+);
+INSERT INTO job_leases (name, owner, expires_at) VALUES ('message-outbox-relay', '', '1970-01-01 00:00:00');
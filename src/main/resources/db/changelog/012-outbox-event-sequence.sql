@@ -0,0 +1,8 @@
+--liquibase formatted sql
+
+-- The session sequence number of each outbox event, so the relay can send a session's
+-- events in order and hold back the ones behind an event that failed. Events written
+-- before this change have 0 and go in ID order.
+
+--changeset messageservice:012-outbox-event-sequence
+ALTER TABLE message_outbox ADD COLUMN event_sequence BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,18 @@
+--liquibase formatted sql
+
+-- Background session deletes, so that any node can report on a job that another node runs.
+-- updated_at moves with every chunk deleted; a running job that stops moving died with its
+-- node and is marked failed. Finished jobs are removed after session-delete.job-retention.
+
+--changeset messageservice:013-session-deletion-jobs
+CREATE TABLE session_deletion_jobs (
+    job_id           BINARY(16)  NOT NULL,
+    session_id       BINARY(16)  NOT NULL,
+    status           VARCHAR(16) NOT NULL,
+    deleted_messages BIGINT      NOT NULL,
+    started_at       DATETIME(6) NOT NULL,
+    updated_at       DATETIME(6) NOT NULL,
+    finished_at      DATETIME(6) NULL,
+    PRIMARY KEY (job_id),
+    INDEX idx_session_deletion_jobs_session (session_id, status)
+);
@@ -0,0 +1,109 @@
+package se.kth.patientjournal;
+
+import api.dto.MessageDTO;
+import core.enums.UserType;
+import core.services.MessageService;
+import data.entities.Session;
+import data.entities.User;
+import data.repositories.SessionRepository;
+import data.repositories.UserRepository;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.response.Response;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+@TestSecurity(user = "etag-doctor", roles = "Doctor")
+class ConditionalGetTest {
+
+    @Inject
+    MessageService messageService;
+
+    @Inject
+    SessionRepository sessionRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    UUID sessionId;
+    UUID doctorId;
+    UUID patientId;
+
+    @BeforeEach
+    void createSession() {
+        String suffix = UUID.randomUUID().toString();
+        QuarkusTransaction.requiringNew().run(() -> {
+            User doctor = new User("ETag Doctor", "doctor-" + suffix + "@example.com", "password", UserType.Doctor);
+            User patient = new User("ETag Patient", "patient-" + suffix + "@example.com", "password", UserType.Patient);
+            userRepository.persist(doctor);
+            userRepository.persist(patient);
+            Session session = new Session(patient.getId(), doctor.getId(), "ETag", LocalDateTime.now());
+            sessionRepository.persist(session);
+            sessionId = session.getSessionId();
+            doctorId = doctor.getId();
+            patientId = patient.getId();
+        });
+        createMessage("first");
+    }
+
+    @Test
+    void getSession_unchanged_isNotModified_untilAMessageIsAddedOrDeleted() {
+        String path = "/sessions/" + sessionId + "?includeMessages=true";
+        Response first = given().get(path).then().statusCode(200).extract().response();
+        String etag = first.header("ETag");
+        assertNotNull(etag);
+        assertTrue(first.header("Cache-Control").contains("private"));
+        assertTrue(first.header("Cache-Control").contains("no-cache"));
+
+        given().header("If-None-Match", etag).get(path)
+                .then().statusCode(304).header("ETag", etag);
+
+        MessageDTO second = createMessage("second");
+        String afterAdd = given().header("If-None-Match", etag).get(path)
+                .then().statusCode(200).extract().header("ETag");
+        assertNotEquals(etag, afterAdd);
+
+        messageService.deleteMessage(second.messageId);
+        String afterDelete = given().header("If-None-Match", afterAdd).get(path)
+                .then().statusCode(200).extract().header("ETag");
+        assertNotEquals(afterAdd, afterDelete);
+        assertNotEquals(etag, afterDelete);
+    }
+
+    @Test
+    void getUserSessions_unchanged_isNotModified_untilASessionChanges() {
+        String path = "/sessions/user/" + doctorId + "?includeMessages=true";
+        String etag = given().get(path).then().statusCode(200).extract().header("ETag");
+        assertNotNull(etag);
+
+        given().header("If-None-Match", etag).get(path).then().statusCode(304);
+
+        createMessage("changed");
+        String afterMessage = given().header("If-None-Match", etag).get(path)
+                .then().statusCode(200).extract().header("ETag");
+        assertNotEquals(etag, afterMessage);
+
+        QuarkusTransaction.requiringNew().run(() ->
+                sessionRepository.persist(new Session(doctorId, patientId, "Another", LocalDateTime.now())));
+        String afterSession = given().header("If-None-Match", afterMessage).get(path)
+                .then().statusCode(200).extract().header("ETag");
+        assertNotEquals(afterMessage, afterSession);
+    }
+
+    private MessageDTO createMessage(String content) {
+        MessageDTO dto = new MessageDTO();
+        dto.sessionId = sessionId;
+        dto.senderId = patientId;
+        dto.message = content;
+        return messageService.createMessage(dto);
+    }
+}
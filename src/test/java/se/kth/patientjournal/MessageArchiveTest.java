@@ -0,0 +1,160 @@
+package se.kth.patientjournal;
+
+import api.dto.MessageDTO;
+import api.dto.MessagePageDTO;
+import core.archive.MessageArchiver;
+import core.enums.UserType;
+import core.services.MessageService;
+import core.services.SessionService;
+import data.entities.JobLease;
+import data.entities.Message;
+import data.entities.Session;
+import data.entities.User;
+import data.repositories.ArchivedMessageRepository;
+import data.repositories.JobLeaseRepository;
+import data.repositories.MessageRepository;
+import data.repositories.SessionRepository;
+import data.repositories.UserRepository;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+class MessageArchiveTest {
+
+    private static final int OLD_MESSAGES = 5;
+    private static final int RECENT_MESSAGES = 2;
+
+    @Inject
+    MessageArchiver archiver;
+
+    @Inject
+    MessageService messageService;
+
+    @Inject
+    SessionService sessionService;
+
+    @Inject
+    MessageRepository messageRepository;
+
+    @Inject
+    ArchivedMessageRepository archivedMessageRepository;
+
+    @Inject
+    SessionRepository sessionRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    @Inject
+    JobLeaseRepository jobLeaseRepository;
+
+    UUID sessionId;
+    UUID patientId;
+    List<UUID> messageIds;
+
+    @BeforeEach
+    void createOldSession() {
+        String suffix = UUID.randomUUID().toString();
+        LocalDateTime longAgo = LocalDateTime.now().minusDays(400);
+        QuarkusTransaction.requiringNew().run(() -> {
+            User doctor = new User("Archive Doctor", "doctor-" + suffix + "@example.com", "password", UserType.Doctor);
+            User patient = new User("Archive Patient", "patient-" + suffix + "@example.com", "password", UserType.Patient);
+            userRepository.persist(doctor);
+            userRepository.persist(patient);
+            Session session = new Session(patient.getId(), doctor.getId(), "Archive", longAgo);
+            sessionRepository.persist(session);
+            sessionId = session.getSessionId();
+            patientId = patient.getId();
+        });
+
+        messageIds = new ArrayList<>();
+        for (int i = 0; i < OLD_MESSAGES + RECENT_MESSAGES; i++) {
+            MessageDTO dto = new MessageDTO();
+            dto.sessionId = sessionId;
+            dto.senderId = patientId;
+            dto.message = "archive message " + i;
+            messageIds.add(messageService.createMessage(dto).messageId);
+        }
+        // Backdate the first messages past the archive age, in their original order
+        QuarkusTransaction.requiringNew().run(() -> {
+            for (int i = 0; i < OLD_MESSAGES; i++) {
+                Message message = messageRepository.findById(messageIds.get(i));
+                message.setDateTime(longAgo.plusMinutes(i));
+            }
+        });
+    }
+
+    @Test
+    void archiveBefore_movesOldMessages_andReadsStillSeeThem() {
+        assertEquals(OLD_MESSAGES, archiver.archiveBefore(LocalDateTime.now().minusDays(365)));
+
+        assertEquals((long) RECENT_MESSAGES,
+                QuarkusTransaction.requiringNew().call(() -> messageRepository.count("sessionId", sessionId)));
+        assertEquals((long) OLD_MESSAGES,
+                QuarkusTransaction.requiringNew().call(() -> archivedMessageRepository.count("sessionId", sessionId)));
+
+        assertEquals(messageIds, messageService.getSessionMessages(sessionId).stream()
+                .map(m -> m.messageId)
+                .toList());
+        assertEquals(messageIds.size(), sessionService.getSessionById(sessionId, true).messages.size());
+        assertEquals("archive message 0", messageService.getMessageById(messageIds.get(0)).message);
+
+        // Walk back from the newest page across the live and archived rows, then forward again
+        List<UUID> walkedBack = new ArrayList<>();
+        MessagePageDTO page = messageService.getSessionMessagesPage(sessionId, null, null, 3);
+        walkedBack.addAll(0, page.messages.stream().map(m -> m.messageId).toList());
+        while (page.hasMore) {
+            page = messageService.getSessionMessagesPage(sessionId, page.beforeCursor, null, 3);
+            walkedBack.addAll(0, page.messages.stream().map(m -> m.messageId).toList());
+        }
+        assertEquals(messageIds, walkedBack);
+
+        MessagePageDTO forward = messageService.getSessionMessagesPage(sessionId, null, page.afterCursor, 10);
+        assertEquals(messageIds.subList(page.messages.size(), messageIds.size()),
+                forward.messages.stream().map(m -> m.messageId).toList());
+    }
+
+    @Test
+    void deleteSession_removesArchivedMessages() {
+        archiver.archiveBefore(LocalDateTime.now().minusDays(365));
+
+        assertTrue(messageService.deleteMessage(messageIds.get(1)));
+        assertNull(QuarkusTransaction.requiringNew().call(() -> archivedMessageRepository.findById(messageIds.get(1))));
+
+        assertTrue(sessionService.deleteSession(sessionId));
+        assertEquals(0L, QuarkusTransaction.requiringNew().call(() -> archivedMessageRepository.count("sessionId", sessionId)));
+    }
+
+    @Test
+    void archiveBefore_movesNothingWhileAnotherNodeHoldsTheLease() {
+        QuarkusTransaction.requiringNew().run(() -> {
+            JobLease lease = jobLeaseRepository.findById(MessageArchiver.ARCHIVE_LEASE);
+            if (lease == null) {
+                jobLeaseRepository.persist(new JobLease(MessageArchiver.ARCHIVE_LEASE, "other-node", LocalDateTime.now().plusMinutes(1)));
+            } else {
+                jobLeaseRepository.update("owner = ?1, expiresAt = ?2 where name = ?3",
+                        "other-node", LocalDateTime.now().plusMinutes(1), MessageArchiver.ARCHIVE_LEASE);
+            }
+        });
+        try {
+            assertEquals(0L, archiver.archiveBefore(LocalDateTime.now().minusDays(365)));
+            assertEquals((long) OLD_MESSAGES + RECENT_MESSAGES,
+                    QuarkusTransaction.requiringNew().call(() -> messageRepository.count("sessionId", sessionId)));
+        } finally {
+            QuarkusTransaction.requiringNew().run(() -> jobLeaseRepository.update(
+                    "expiresAt = ?1 where name = ?2", LocalDateTime.now().minusSeconds(1), MessageArchiver.ARCHIVE_LEASE));
+        }
+
+        assertEquals(OLD_MESSAGES, archiver.archiveBefore(LocalDateTime.now().minusDays(365)));
+    }
+}
@@ -0,0 +1,97 @@
+package se.kth.patientjournal;
+
+import api.dto.MessageCreatedEvent;
+import core.outbox.MessageEventCodec;
+import core.outbox.MessageEventSerializer;
+import core.push.MessageCreatedEventDeserializer;
+import io.quarkus.kafka.client.serialization.ObjectMapperSerializer;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageEventCodecTest {
+
+    private final MessageCreatedEventDeserializer deserializer = new MessageCreatedEventDeserializer();
+
+    @Test
+    void binaryEvent_roundTrips_andIsSmallerThanJson() {
+        MessageCreatedEvent event = event("Hej, hur mår du? Provsvaren är klara.");
+
+        byte[] binary = new MessageEventSerializer().serialize("chat-messages", event);
+        byte[] json = new ObjectMapperSerializer<MessageCreatedEvent>().serialize("chat-messages", event);
+
+        assertEquals(MessageEventCodec.VERSION_2, binary[0]);
+        assertTrue(binary.length < json.length / 2, binary.length + " vs " + json.length);
+        assertEvent(event, deserializer.deserialize("chat-messages", binary));
+    }
+
+    @Test
+    void jsonEvent_isStillRead() {
+        MessageCreatedEvent event = event("From a node that still writes JSON");
+
+        byte[] json = new ObjectMapperSerializer<MessageCreatedEvent>().serialize("chat-messages", event);
+
+        assertEvent(event, deserializer.deserialize("chat-messages", json));
+    }
+
+    @Test
+    void version1Event_isStillRead_withoutSequence() {
+        MessageCreatedEvent event = event("Written before events had sequence numbers");
+        byte[] current = MessageEventCodec.encode(event);
+        // Version 1 had no sequence number between the timestamp and the content
+        int sequenceOffset = 1 + 4 * 16 + 8;
+        byte[] version1 = new byte[current.length - 8];
+        System.arraycopy(current, 0, version1, 0, sequenceOffset);
+        System.arraycopy(current, sequenceOffset + 8, version1, sequenceOffset, version1.length - sequenceOffset);
+        version1[0] = MessageEventCodec.VERSION_1;
+
+        MessageCreatedEvent read = MessageEventCodec.decode(version1);
+
+        event.sequence = 0;
+        assertEvent(event, read);
+    }
+
+    @Test
+    void missingContent_roundTrips() {
+        MessageCreatedEvent event = event(null);
+
+        assertEvent(event, MessageEventCodec.decode(MessageEventCodec.encode(event)));
+    }
+
+    @Test
+    void unknownVersion_andTruncatedEvent_areRejected() {
+        byte[] binary = MessageEventCodec.encode(event("Truncated"));
+        byte[] future = binary.clone();
+        future[0] = 3;
+
+        assertThrows(SerializationException.class, () -> MessageEventCodec.decode(future));
+        assertThrows(SerializationException.class,
+                () -> MessageEventCodec.decode(Arrays.copyOf(binary, binary.length - 3)));
+    }
+
+    private static MessageCreatedEvent event(String content) {
+        MessageCreatedEvent event = new MessageCreatedEvent();
+        event.messageId = UUID.randomUUID();
+        event.sessionId = UUID.randomUUID();
+        event.senderId = UUID.randomUUID();
+        event.receiverId = UUID.randomUUID();
+        event.content = content;
+        event.timestamp = System.currentTimeMillis();
+        event.sequence = 42;
+        return event;
+    }
+
+    private static void assertEvent(MessageCreatedEvent expected, MessageCreatedEvent actual) {
+        assertEquals(expected.messageId, actual.messageId);
+        assertEquals(expected.sessionId, actual.sessionId);
+        assertEquals(expected.senderId, actual.senderId);
+        assertEquals(expected.receiverId, actual.receiverId);
+        assertEquals(expected.content, actual.content);
+        assertEquals(expected.timestamp, actual.timestamp);
+        assertEquals(expected.sequence, actual.sequence);
+    }
+}
@@ -0,0 +1,351 @@
+package se.kth.patientjournal;
+
+import api.dto.MessageCreatedEvent;
+import api.dto.MessageDTO;
+import api.dto.MessageDeletedEvent;
+import api.dto.SessionDeletedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import core.cluster.JobLeases;
+import core.enums.UserType;
+import core.logging.CorrelationId;
+import core.outbox.MessageOutbox;
+import core.services.MessageService;
+import core.services.SessionService;
+import data.entities.OutboxEvent;
+import data.entities.Session;
+import data.entities.User;
+import data.repositories.JobLeaseRepository;
+import data.repositories.OutboxRepository;
+import data.repositories.SessionRepository;
+import data.repositories.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.reactive.messaging.kafka.api.OutgoingKafkaRecordMetadata;
+import io.smallrye.reactive.messaging.memory.InMemoryConnector;
+import io.smallrye.reactive.messaging.memory.InMemorySink;
+import jakarta.enterprise.inject.Any;
+import jakarta.inject.Inject;
+import org.apache.kafka.common.header.Header;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+class MessageOutboxTest {
+
+    private static final int MAX_ATTEMPTS = 10;
+
+    @Inject
+    MessageOutbox outbox;
+
+    @Inject
+    OutboxRepository outboxRepository;
+
+    @Inject
+    JobLeases jobLeases;
+
+    @Inject
+    JobLeaseRepository jobLeaseRepository;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    MessageService messageService;
+
+    @Inject
+    SessionService sessionService;
+
+    @Inject
+    SessionRepository sessionRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    @Inject
+    @Any
+    InMemoryConnector connector;
+
+    @Test
+    void relayBatch_sendsCommittedEventsOnly_andDrainsOutbox() {
+        InMemorySink<MessageCreatedEvent> sink = connector.sink("message-events-out");
+        sink.clear();
+        long acknowledgedBefore = registry.timer(MessageOutbox.SEND_TIMER, "outcome", "success").count();
+
+        MessageCreatedEvent committed = event("committed");
+        QuarkusTransaction.requiringNew().run(() -> outbox.enqueue(committed));
+
+        MessageCreatedEvent rolledBack = event("rolled back");
+        assertThrows(IllegalStateException.class, () -> QuarkusTransaction.requiringNew().run(() -> {
+            outbox.enqueue(rolledBack);
+            throw new IllegalStateException("rollback");
+        }));
+
+        assertTrue(outbox.relayBatch() >= 1);
+        List<UUID> sent = sink.received().stream()
+                .map(m -> m.getPayload().messageId)
+                .toList();
+        assertTrue(sent.contains(committed.messageId));
+        assertFalse(sent.contains(rolledBack.messageId));
+        assertEquals(0L, QuarkusTransaction.requiringNew().call(() -> outboxRepository.count()));
+        assertTrue(registry.timer(MessageOutbox.SEND_TIMER, "outcome", "success").count() > acknowledgedBefore);
+    }
+
+    @Test
+    void relayBatch_forwardsCorrelationIdAsKafkaHeader() {
+        InMemorySink<MessageCreatedEvent> sink = connector.sink("message-events-out");
+        sink.clear();
+
+        MessageCreatedEvent event = event("correlated");
+        CorrelationId.set("request-42");
+        try {
+            QuarkusTransaction.requiringNew().run(() -> outbox.enqueue(event));
+        } finally {
+            CorrelationId.clear();
+        }
+        outbox.relayBatch();
+
+        Message<MessageCreatedEvent> sent = sink.received().stream()
+                .filter(m -> m.getPayload().messageId.equals(event.messageId))
+                .findFirst()
+                .orElseThrow();
+        @SuppressWarnings("unchecked")
+        OutgoingKafkaRecordMetadata<Object> metadata = sent.getMetadata(OutgoingKafkaRecordMetadata.class).orElseThrow();
+        Header header = metadata.getHeaders().lastHeader(CorrelationId.KAFKA_HEADER);
+        assertEquals("request-42", new String(header.value(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void relayBatch_keysEventsBySession_withConsecutiveSequenceNumbers() {
+        InMemorySink<MessageCreatedEvent> sink = connector.sink("message-events-out");
+        sink.clear();
+        String suffix = UUID.randomUUID().toString();
+        UUID[] ids = QuarkusTransaction.requiringNew().call(() -> {
+            User doctor = new User("Keyed Doctor", "doctor-" + suffix + "@example.com", "password", UserType.Doctor);
+            User patient = new User("Keyed Patient", "patient-" + suffix + "@example.com", "password", UserType.Patient);
+            userRepository.persist(doctor);
+            userRepository.persist(patient);
+            Session first = new Session(patient.getId(), doctor.getId(), "First", LocalDateTime.now());
+            Session second = new Session(patient.getId(), doctor.getId(), "Second", LocalDateTime.now());
+            sessionRepository.persist(first);
+            sessionRepository.persist(second);
+            return new UUID[] {first.getSessionId(), second.getSessionId(), patient.getId()};
+        });
+
+        messageService.createMessage(message(ids[0], ids[2], "one"));
+        messageService.createMessages(List.of(
+                message(ids[1], ids[2], "a"),
+                message(ids[0], ids[2], "two"),
+                message(ids[1], ids[2], "b"),
+                message(ids[0], ids[2], "three")));
+        messageService.createMessage(message(ids[1], ids[2], "c"));
+        outbox.relayBatch();
+
+        for (int s = 0; s < 2; s++) {
+            UUID sessionId = ids[s];
+            List<? extends Message<MessageCreatedEvent>> sent = sink.received().stream()
+                    .filter(m -> m.getPayload().sessionId.equals(sessionId))
+                    .toList();
+            assertEquals(List.of(1L, 2L, 3L), sent.stream().map(m -> m.getPayload().sequence).toList());
+            for (Message<MessageCreatedEvent> m : sent) {
+                @SuppressWarnings("unchecked")
+                OutgoingKafkaRecordMetadata<Object> metadata = m.getMetadata(OutgoingKafkaRecordMetadata.class).orElseThrow();
+                assertEquals(sessionId.toString(), metadata.getKey());
+            }
+        }
+        assertEquals(List.of("one", "two", "three"), sink.received().stream()
+                .filter(m -> m.getPayload().sessionId.equals(ids[0]))
+                .map(m -> m.getPayload().content)
+                .toList());
+    }
+
+    @Test
+    void relayBatch_failedEvent_backsOffWithoutBlockingOthers_andIsParkedAfterMaxAttempts() {
+        InMemorySink<MessageCreatedEvent> sink = connector.sink("message-events-out");
+        sink.clear();
+        UUID poisonId = QuarkusTransaction.requiringNew().call(() -> {
+            OutboxEvent poison = new OutboxEvent(MessageOutbox.MESSAGE_CREATED, UUID.randomUUID(), 1, "not json", null);
+            outboxRepository.persist(poison);
+            return poison.getEventId();
+        });
+        try {
+            outbox.relayBatch();
+            OutboxEvent failed = QuarkusTransaction.requiringNew().call(() -> outboxRepository.findById(poisonId));
+            assertEquals(1, failed.getAttempts());
+            assertNotNull(failed.getLastError());
+            assertTrue(failed.getNextAttemptAt().isAfter(LocalDateTime.now()));
+
+            // Not due again yet, so it neither fails again nor holds up newer events
+            MessageCreatedEvent next = event("after the poison");
+            QuarkusTransaction.requiringNew().run(() -> outbox.enqueue(next));
+            assertEquals(1, outbox.relayBatch());
+            assertTrue(sink.received().stream().anyMatch(m -> m.getPayload().messageId.equals(next.messageId)));
+            assertEquals(1, QuarkusTransaction.requiringNew().call(() -> outboxRepository.findById(poisonId)).getAttempts());
+
+            // The last attempt parks it for good
+            double parkedBefore = registry.counter(MessageOutbox.PARKED_COUNTER).count();
+            QuarkusTransaction.requiringNew().run(() -> {
+                OutboxEvent event = outboxRepository.findById(poisonId);
+                for (int i = event.getAttempts(); i < MAX_ATTEMPTS - 1; i++) {
+                    event.recordFailure("earlier failure");
+                }
+                event.retryAt(LocalDateTime.now().minusSeconds(1));
+            });
+            outbox.relayBatch();
+            OutboxEvent parked = QuarkusTransaction.requiringNew().call(() -> outboxRepository.findById(poisonId));
+            assertEquals(MAX_ATTEMPTS, parked.getAttempts());
+            assertNotNull(parked.getParkedAt());
+            assertEquals(parkedBefore + 1, registry.counter(MessageOutbox.PARKED_COUNTER).count());
+        } finally {
+            QuarkusTransaction.requiringNew().run(() -> outboxRepository.deleteById(poisonId));
+        }
+    }
+
+    @Test
+    void relayBatch_failureInTheMiddleOfASession_holdsBackItsLaterEventsUntilTheRetry() throws Exception {
+        InMemorySink<MessageCreatedEvent> sink = connector.sink("message-events-out");
+        sink.clear();
+        UUID sessionId = UUID.randomUUID();
+        MessageCreatedEvent first = event("first", sessionId, 1);
+        MessageCreatedEvent second = event("second", sessionId, 2);
+        MessageCreatedEvent third = event("third", sessionId, 3);
+        UUID secondId = QuarkusTransaction.requiringNew().call(() -> {
+            outbox.enqueue(first);
+            OutboxEvent poison = new OutboxEvent(MessageOutbox.MESSAGE_CREATED, sessionId, 2, "not json yet", null);
+            outboxRepository.persist(poison);
+            outbox.enqueue(third);
+            return poison.getEventId();
+        });
+        try {
+            outbox.relayBatch();
+            assertEquals(List.of(1L), sentSequences(sink, sessionId));
+            List<OutboxEvent> pending = QuarkusTransaction.requiringNew().call(() ->
+                    outboxRepository.list("sessionId = ?1 order by sequence", sessionId));
+            assertEquals(List.of(1, 0), pending.stream().map(OutboxEvent::getAttempts).toList());
+
+            // The third is due again but waits while the second backs off
+            outbox.relayBatch();
+            assertEquals(List.of(1L), sentSequences(sink, sessionId));
+
+            String payload = objectMapper.writeValueAsString(second);
+            QuarkusTransaction.requiringNew().run(() -> outboxRepository.update(
+                    "payload = ?1, nextAttemptAt = ?2 where eventId = ?3", payload, LocalDateTime.now().minusSeconds(1), secondId));
+            outbox.relayBatch();
+            assertEquals(List.of(1L, 2L, 3L), sentSequences(sink, sessionId));
+        } finally {
+            QuarkusTransaction.requiringNew().run(() -> outboxRepository.delete("sessionId", sessionId));
+        }
+    }
+
+    @Test
+    void relayLease_isHeldByOneNodeAtATime() {
+        String job = "test-job-" + UUID.randomUUID();
+        assertTrue(jobLeases.tryAcquire(job, Duration.ofMinutes(1)));
+        assertTrue(jobLeases.tryAcquire(job, Duration.ofMinutes(1)));
+
+        QuarkusTransaction.requiringNew().run(() -> jobLeaseRepository.update(
+                "owner = 'another-node' where name = ?1", job));
+        assertFalse(jobLeases.tryAcquire(job, Duration.ofMinutes(1)));
+
+        QuarkusTransaction.requiringNew().run(() -> jobLeaseRepository.update(
+                "expiresAt = ?1 where name = ?2", LocalDateTime.now().minusSeconds(1), job));
+        assertTrue(jobLeases.tryAcquire(job, Duration.ofMinutes(1)));
+    }
+
+    @Test
+    void relayBatch_sendsDeletions_keyedBySession_afterTheSessionsEarlierEvents() {
+        InMemorySink<MessageCreatedEvent> created = connector.sink("message-events-out");
+        InMemorySink<MessageDeletedEvent> messageDeletions = connector.sink("message-deletions-out");
+        InMemorySink<SessionDeletedEvent> sessionDeletions = connector.sink("session-deletions-out");
+        created.clear();
+        messageDeletions.clear();
+        sessionDeletions.clear();
+        String suffix = UUID.randomUUID().toString();
+        UUID[] ids = QuarkusTransaction.requiringNew().call(() -> {
+            User doctor = new User("Deleting Doctor", "doctor-" + suffix + "@example.com", "password", UserType.Doctor);
+            User patient = new User("Deleting Patient", "patient-" + suffix + "@example.com", "password", UserType.Patient);
+            userRepository.persist(doctor);
+            userRepository.persist(patient);
+            Session session = new Session(patient.getId(), doctor.getId(), "Deleted", LocalDateTime.now());
+            sessionRepository.persist(session);
+            return new UUID[] {session.getSessionId(), patient.getId()};
+        });
+        UUID first = messageService.createMessage(message(ids[0], ids[1], "first")).messageId;
+        messageService.createMessage(message(ids[0], ids[1], "second"));
+
+        assertTrue(messageService.deleteMessage(first));
+        OutboxEvent deletion = QuarkusTransaction.requiringNew().call(() -> outboxRepository
+                .find("sessionId = ?1 and eventType = ?2", ids[0], MessageOutbox.MESSAGE_DELETED).singleResult());
+        assertEquals(2L, deletion.getSequence());
+        outbox.relayBatch();
+        assertEquals(List.of(1L, 2L), sentSequences(created, ids[0]));
+        assertEquals(List.of(first), messageDeletions.received().stream()
+                .filter(m -> m.getPayload().sessionId.equals(ids[0]))
+                .map(m -> m.getPayload().messageId)
+                .toList());
+
+        assertTrue(sessionService.deleteSession(ids[0]));
+        outbox.relayBatch();
+        Message<SessionDeletedEvent> sessionDeleted = sessionDeletions.received().stream()
+                .filter(m -> m.getPayload().sessionId.equals(ids[0]))
+                .findFirst()
+                .orElseThrow();
+        @SuppressWarnings("unchecked")
+        OutgoingKafkaRecordMetadata<Object> metadata = sessionDeleted.getMetadata(OutgoingKafkaRecordMetadata.class).orElseThrow();
+        assertEquals(ids[0].toString(), metadata.getKey());
+        assertEquals(0L, QuarkusTransaction.requiringNew().call(() -> outboxRepository.count("sessionId", ids[0])));
+    }
+
+    @Test
+    void eventToString_redactsContent() {
+        MessageCreatedEvent event = event("my test results came back positive");
+
+        String logged = event.toString();
+        assertFalse(logged.contains("positive"));
+        assertTrue(logged.contains(event.messageId.toString()));
+    }
+
+    private static MessageDTO message(UUID sessionId, UUID senderId, String content) {
+        MessageDTO dto = new MessageDTO();
+        dto.sessionId = sessionId;
+        dto.senderId = senderId;
+        dto.message = content;
+        return dto;
+    }
+
+    private static List<Long> sentSequences(InMemorySink<MessageCreatedEvent> sink, UUID sessionId) {
+        return sink.received().stream()
+                .filter(m -> m.getPayload().sessionId.equals(sessionId))
+                .map(m -> m.getPayload().sequence)
+                .toList();
+    }
+
+    private MessageCreatedEvent event(String content, UUID sessionId, long sequence) {
+        MessageCreatedEvent event = event(content);
+        event.sessionId = sessionId;
+        event.sequence = sequence;
+        return event;
+    }
+
+    private MessageCreatedEvent event(String content) {
+        MessageCreatedEvent event = new MessageCreatedEvent();
+        event.messageId = UUID.randomUUID();
+        event.sessionId = UUID.randomUUID();
+        event.senderId = UUID.randomUUID();
+        event.receiverId = UUID.randomUUID();
+        event.content = content;
+        event.timestamp = System.currentTimeMillis();
+        return event;
+    }
+}
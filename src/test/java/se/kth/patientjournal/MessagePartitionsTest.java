@@ -0,0 +1,68 @@
+package se.kth.patientjournal;
+
+import core.archive.MessagePartitions;
+import core.archive.MessagePartitions.Partition;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessagePartitionsTest {
+
+    private static final List<Partition> MIGRATED = List.of(
+            Partition.parse("p_history", "'2026-11-01 00:00:00'"),
+            Partition.parse("p_future", "MAXVALUE"));
+
+    @Test
+    void missing_addsMonthsAfterTheLastBound_upToMonthsAhead() {
+        List<Partition> added = MessagePartitions.missing(MIGRATED, LocalDate.of(2027, 1, 15), 2);
+
+        assertEquals(List.of("p202611", "p202612", "p202701", "p202702", "p202703"),
+                added.stream().map(Partition::getName).toList());
+        assertEquals(LocalDateTime.of(2026, 12, 1, 0, 0), added.get(0).getUpperBound());
+        assertEquals(LocalDateTime.of(2027, 4, 1, 0, 0), added.get(added.size() - 1).getUpperBound());
+        assertEquals("ALTER TABLE messages REORGANIZE PARTITION p_future INTO ("
+                        + "PARTITION p202611 VALUES LESS THAN ('2026-12-01 00:00:00'), "
+                        + "PARTITION p202612 VALUES LESS THAN ('2027-01-01 00:00:00'), "
+                        + "PARTITION p202701 VALUES LESS THAN ('2027-02-01 00:00:00'), "
+                        + "PARTITION p202702 VALUES LESS THAN ('2027-03-01 00:00:00'), "
+                        + "PARTITION p202703 VALUES LESS THAN ('2027-04-01 00:00:00'), "
+                        + "PARTITION p_future VALUES LESS THAN (MAXVALUE))",
+                MessagePartitions.reorganizeFuture(added));
+    }
+
+    @Test
+    void missing_isEmpty_whenMonthsAheadExist() {
+        List<Partition> partitions = List.of(
+                Partition.parse("p202610", "'2026-11-01 00:00:00'"),
+                Partition.parse("p202611", "'2026-12-01 00:00:00'"),
+                Partition.parse("p_future", "MAXVALUE"));
+
+        assertTrue(MessagePartitions.missing(partitions, LocalDate.of(2026, 10, 17), 1).isEmpty());
+        assertEquals(List.of("p202612"), MessagePartitions.missing(partitions, LocalDate.of(2026, 11, 1), 1).stream()
+                .map(Partition::getName)
+                .toList());
+    }
+
+    @Test
+    void expired_isPartitionsWhollyBeforeTheCutoff() {
+        List<Partition> partitions = List.of(
+                Partition.parse("p_history", "'2026-11-01 00:00:00'"),
+                Partition.parse("p202611", "'2026-12-01 00:00:00'"),
+                Partition.parse("p_future", "MAXVALUE"));
+
+        assertEquals(List.of("p_history"),
+                MessagePartitions.expired(partitions, LocalDateTime.of(2026, 11, 20, 12, 0)).stream()
+                        .map(Partition::getName)
+                        .toList());
+        assertEquals("ALTER TABLE messages DROP PARTITION p_history", MessagePartitions.drop(partitions.get(0)));
+    }
+
+    @Test
+    void parse_rejectsUnexpectedBounds() {
+        assertThrows(IllegalStateException.class, () -> Partition.parse("p1", "12345"));
+    }
+}
@@ -0,0 +1,176 @@
+package se.kth.patientjournal;
+
+import api.dto.MessageCreatedEvent;
+import api.dto.MessageDTO;
+import core.enums.UserType;
+import core.push.MessagePushRegistry;
+import core.services.MessageService;
+import data.entities.Session;
+import data.entities.User;
+import data.repositories.SessionRepository;
+import data.repositories.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.common.http.TestHTTPResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.smallrye.mutiny.helpers.test.AssertSubscriber;
+import io.smallrye.mutiny.subscription.BackPressureFailure;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.MediaType;
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+class MessagePushTest {
+
+    private static final String SUBSCRIBER_EMAIL = "push-subscriber@example.com";
+
+    @TestHTTPResource
+    URL baseUrl;
+
+    @Inject
+    MessagePushRegistry pushRegistry;
+
+    @Inject
+    MessageService messageService;
+
+    @Inject
+    SessionRepository sessionRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    @Inject
+    Event<MessageCreatedEvent> messageCreated;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Test
+    void createMessage_pushesToBothParticipants_afterCommit() {
+        String suffix = UUID.randomUUID().toString();
+        UUID[] ids = QuarkusTransaction.requiringNew().call(() -> {
+            User doctor = new User("Push Doctor", "doctor-" + suffix + "@example.com", "password", UserType.Doctor);
+            User patient = new User("Push Patient", "patient-" + suffix + "@example.com", "password", UserType.Patient);
+            userRepository.persist(doctor);
+            userRepository.persist(patient);
+            Session session = new Session(patient.getId(), doctor.getId(), "Push", LocalDateTime.now());
+            sessionRepository.persist(session);
+            return new UUID[] {session.getSessionId(), patient.getId(), doctor.getId()};
+        });
+        AssertSubscriber<MessageDTO> doctor = pushRegistry.subscribe(ids[2])
+                .subscribe().withSubscriber(AssertSubscriber.create(10));
+        AssertSubscriber<MessageDTO> patient = pushRegistry.subscribe(ids[1])
+                .subscribe().withSubscriber(AssertSubscriber.create(10));
+
+        MessageDTO dto = new MessageDTO();
+        dto.sessionId = ids[0];
+        dto.senderId = ids[1];
+        dto.message = "Pushed";
+        MessageDTO created = messageService.createMessage(dto);
+
+        doctor.awaitItems(1, Duration.ofSeconds(5));
+        patient.awaitItems(1, Duration.ofSeconds(5));
+        assertEquals(created.messageId, doctor.getItems().get(0).messageId);
+        assertEquals("Pushed", doctor.getItems().get(0).message);
+        doctor.cancel();
+        patient.cancel();
+    }
+
+    @Test
+    void rolledBackMessage_isNotPushed() {
+        UUID receiverId = UUID.randomUUID();
+        AssertSubscriber<MessageDTO> subscriber = pushRegistry.subscribe(receiverId)
+                .subscribe().withSubscriber(AssertSubscriber.create(10));
+
+        assertThrows(IllegalStateException.class, () -> QuarkusTransaction.requiringNew().run(() -> {
+            messageCreated.fire(event(receiverId));
+            throw new IllegalStateException("rollback");
+        }));
+        QuarkusTransaction.requiringNew().run(() -> messageCreated.fire(event(receiverId)));
+
+        subscriber.awaitItems(1, Duration.ofSeconds(5));
+        assertEquals(1, subscriber.getItems().size());
+        subscriber.cancel();
+    }
+
+    @Test
+    void slowSubscriber_isDisconnected_andUnregistered() {
+        UUID receiverId = UUID.randomUUID();
+        double before = registry.get(MessagePushRegistry.SUBSCRIBERS_GAUGE).gauge().value();
+        AssertSubscriber<MessageDTO> subscriber = pushRegistry.subscribe(receiverId)
+                .subscribe().withSubscriber(AssertSubscriber.create(0));
+        assertEquals(before + 1, registry.get(MessagePushRegistry.SUBSCRIBERS_GAUGE).gauge().value());
+
+        // The test buffer holds 4 messages
+        for (int i = 0; i < 5; i++) {
+            QuarkusTransaction.requiringNew().run(() -> messageCreated.fire(event(receiverId)));
+        }
+
+        subscriber.awaitFailure(Duration.ofSeconds(5));
+        assertInstanceOf(BackPressureFailure.class, subscriber.getFailure());
+        assertEquals(before, registry.get(MessagePushRegistry.SUBSCRIBERS_GAUGE).gauge().value());
+    }
+
+    @Test
+    @TestSecurity(user = SUBSCRIBER_EMAIL, roles = "Patient")
+    void subscribeEndpoint_streamsTheCallersMessages_andRejectsOtherUsers() throws Exception {
+        UUID[] ids = QuarkusTransaction.requiringNew().call(() -> {
+            User subscriber = userRepository.findByEmail(SUBSCRIBER_EMAIL);
+            if (subscriber == null) {
+                subscriber = new User("Push Subscriber", SUBSCRIBER_EMAIL, "password", UserType.Patient);
+                userRepository.persist(subscriber);
+            }
+            User doctor = new User("Push Doctor", "doctor-" + UUID.randomUUID() + "@example.com", "password", UserType.Doctor);
+            userRepository.persist(doctor);
+            Session session = new Session(doctor.getId(), subscriber.getId(), "Pushed over SSE", LocalDateTime.now());
+            sessionRepository.persist(session);
+            return new UUID[] {session.getSessionId(), doctor.getId(), subscriber.getId()};
+        });
+
+        given().get("/sessions/events/user/" + ids[1]).then().statusCode(403);
+
+        HttpClient client = HttpClient.newHttpClient();
+        HttpResponse<Stream<String>> events = client.send(
+                HttpRequest.newBuilder(baseUrl.toURI().resolve("/sessions/events/user/" + ids[2])).build(),
+                HttpResponse.BodyHandlers.ofLines());
+        try (Stream<String> lines = events.body()) {
+            assertEquals(200, events.statusCode());
+            assertTrue(events.headers().firstValue("content-type").orElse("").startsWith(MediaType.SERVER_SENT_EVENTS));
+
+            MessageDTO dto = new MessageDTO();
+            dto.sessionId = ids[0];
+            dto.senderId = ids[1];
+            dto.message = "Over SSE";
+            // The subscription is registered once the response has started
+            MessageDTO created = messageService.createMessage(dto);
+
+            String data = lines.filter(line -> line.startsWith("data:")).findFirst().orElseThrow();
+            assertTrue(data.contains(created.messageId.toString()));
+        }
+    }
+
+    private static MessageCreatedEvent event(UUID receiverId) {
+        MessageCreatedEvent event = new MessageCreatedEvent();
+        event.messageId = UUID.randomUUID();
+        event.sessionId = UUID.randomUUID();
+        event.senderId = UUID.randomUUID();
+        event.receiverId = receiverId;
+        event.content = "push test";
+        event.timestamp = System.currentTimeMillis();
+        return event;
+    }
+}
@@ -126,4 +126,56 @@ class MessageRepositoryTest {
         List<Message> page = messageRepository.findSessionMessagesWithPagination(session.getSessionId(), 0, 1);
         assertEquals(1, page.size());
     }
+
+    @Test
+    @TestTransaction
+    void keysetQueries_walkHistoryInOrder() {
+        cleanUp();
+        Message message3 = new Message(session, sender, "Third message");
+        message3.setDateTime(message2.getDateTime());
+        messageRepository.persist(message3);
+
+        List<Message> latest = messageRepository.findLatestSessionMessages(session.getSessionId(), 2);
+        assertEquals(2, latest.size());
+        assertEquals(message1, messageRepository.findSessionMessagesBefore(session.getSessionId(),
+                latest.get(1).getDateTime(), latest.get(1).getMessageId(), 10).get(0));
+
+        List<Message> after = messageRepository.findSessionMessagesAfter(session.getSessionId(),
+                message1.getDateTime(), message1.getMessageId(), 10);
+        assertEquals(2, after.size());
+        assertEquals(latest.get(1), after.get(0));
+        assertEquals(latest.get(0), after.get(1));
+    }
+
+    @Test
+    @TestTransaction
+    void persistedIds_areTimeOrderedVersion7() {
+        cleanUp();
+        assertEquals(7, sender.getId().version());
+        assertEquals(7, session.getSessionId().version());
+        assertEquals(7, message1.getMessageId().version());
+        // the leading 48 bits hold the creation time in milliseconds
+        assertTrue(message1.getMessageId().getMostSignificantBits() >>> 16
+                <= message2.getMessageId().getMostSignificantBits() >>> 16);
+    }
+
+    @Test
+    @TestTransaction
+    void sessionSummary_keepsNewestMessage_whenUpdatesArriveOutOfOrder() {
+        cleanUp();
+        UUID sessionId = session.getSessionId();
+        sessionRepository.recordMessageAdded(sessionId, message2.getMessageId(), "Another message", message2.getDateTime());
+        sessionRepository.recordMessageAdded(sessionId, message1.getMessageId(), "Hello world", message1.getDateTime());
+        sessionRepository.getEntityManager().clear();
+
+        Session summary = sessionRepository.findById(sessionId);
+        assertEquals(2L, summary.getMessageCount());
+        assertEquals(message2.getMessageId(), summary.getLastMessageId());
+        assertEquals("Another message", summary.getLastMessagePreview());
+        assertEquals(message2.getDateTime(), summary.getLastActivity());
+
+        List<Session> inbox = sessionRepository.findUserSessionsByActivity(sender.getId(), 10);
+        assertEquals(1, inbox.size());
+        assertEquals(sessionId, inbox.get(0).getSessionId());
+    }
 }
@@ -0,0 +1,98 @@
+package se.kth.patientjournal;
+
+import api.dto.MessageCreatedEvent;
+import api.dto.MessageDeletedEvent;
+import api.dto.SessionDeletedEvent;
+import core.search.MessageSearchIndex;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.reactive.messaging.memory.InMemoryConnector;
+import jakarta.enterprise.inject.Any;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+class MessageSearchIndexTest {
+
+    @Inject
+    MessageSearchIndex searchIndex;
+
+    @Inject
+    @Any
+    InMemoryConnector connector;
+
+    @Test
+    void search_ranksMatchesAndScopesToParticipant() {
+        UUID patient = UUID.randomUUID();
+        UUID doctor = UUID.randomUUID();
+        UUID otherPatient = UUID.randomUUID();
+        UUID session = UUID.randomUUID();
+        UUID otherSession = UUID.randomUUID();
+
+        UUID strongMatch = UUID.randomUUID();
+        UUID weakMatch = UUID.randomUUID();
+        UUID otherUsersMatch = UUID.randomUUID();
+        searchIndex.index(strongMatch, session, List.of(patient, doctor), "headache headache since monday", LocalDateTime.now());
+        searchIndex.index(weakMatch, session, List.of(patient, doctor), "the headache is gone but I still feel tired today", LocalDateTime.now());
+        searchIndex.index(otherUsersMatch, otherSession, List.of(otherPatient, doctor), "headache", LocalDateTime.now());
+        searchIndex.refresh();
+
+        assertEquals(List.of(strongMatch, weakMatch), searchIndex.search("Headache", patient, 0, 10));
+        assertEquals(List.of(weakMatch), searchIndex.search("headache", patient, 1, 1));
+        assertEquals(3, searchIndex.search("headache", doctor, 0, 10).size());
+        assertTrue(searchIndex.search("fever", patient, 0, 10).isEmpty());
+
+        searchIndex.remove(strongMatch);
+        searchIndex.refresh();
+        assertEquals(List.of(weakMatch), searchIndex.search("headache", patient, 0, 10));
+    }
+
+    @Test
+    void eventsFromOtherNodes_areIndexedAndRemoved() throws InterruptedException {
+        UUID patient = UUID.randomUUID();
+        UUID doctor = UUID.randomUUID();
+        UUID session = UUID.randomUUID();
+        MessageCreatedEvent kept = remoteEvent(session, patient, doctor, "rash on the left arm");
+        MessageCreatedEvent deleted = remoteEvent(session, patient, doctor, "rash is spreading");
+        MessageCreatedEvent otherSession = remoteEvent(UUID.randomUUID(), patient, doctor, "rash again");
+
+        connector.<MessageCreatedEvent>source("message-events-in").send(kept);
+        connector.<MessageCreatedEvent>source("message-events-in").send(deleted);
+        connector.<MessageCreatedEvent>source("message-events-in").send(otherSession);
+        awaitSearch(() -> searchIndex.search("rash", patient, 0, 10).size() == 3);
+
+        connector.<MessageDeletedEvent>source("message-deletions-in").send(new MessageDeletedEvent(deleted.messageId, session));
+        awaitSearch(() -> !searchIndex.search("rash", patient, 0, 10).contains(deleted.messageId));
+        assertEquals(2, searchIndex.search("rash", patient, 0, 10).size());
+
+        connector.<SessionDeletedEvent>source("session-deletions-in").send(new SessionDeletedEvent(session));
+        awaitSearch(() -> !searchIndex.search("rash", patient, 0, 10).contains(kept.messageId));
+        assertEquals(List.of(otherSession.messageId), searchIndex.search("rash", patient, 0, 10));
+    }
+
+    private static MessageCreatedEvent remoteEvent(UUID sessionId, UUID senderId, UUID receiverId, String content) {
+        MessageCreatedEvent event = new MessageCreatedEvent();
+        event.messageId = UUID.randomUUID();
+        event.sessionId = sessionId;
+        event.senderId = senderId;
+        event.receiverId = receiverId;
+        event.content = content;
+        event.timestamp = System.currentTimeMillis();
+        return event;
+    }
+
+    // The consumers index on a worker thread, after the send returns
+    private static void awaitSearch(Supplier<Boolean> condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!condition.get()) {
+            assertTrue(System.nanoTime() < deadline, "Index did not catch up in time");
+            Thread.sleep(20);
+        }
+    }
+}
@@ -1,15 +1,27 @@
 package se.kth.patientjournal;
 
 import core.services.MessageService;
+import api.dto.MessageBatchResultDTO;
 import api.dto.MessageDTO;
 import api.dto.MessageCreatedEvent;
+import api.dto.MessageDeletedEvent;
+import api.dto.MessagePageDTO;
+import api.dto.SessionDTO;
+import core.cache.ParticipantCache;
+import core.cache.SessionParticipants;
+import core.outbox.MessageOutbox;
+import core.pagination.MessageCursor;
+import core.search.MessageSearchIndex;
 import core.mappers.DTOMapper;
 import data.entities.Message;
 import data.entities.Session;
 import data.entities.User;
+import data.repositories.ArchivedMessageRepository;
 import data.repositories.MessageRepository;
 import data.repositories.SessionRepository;
 import data.repositories.UserRepository;
+import jakarta.enterprise.event.Event;
+import jakarta.persistence.EntityManager;
 import org.eclipse.microprofile.reactive.messaging.Emitter;
 import org.eclipse.microprofile.reactive.messaging.Outgoing;
 import org.junit.jupiter.api.BeforeEach;
@@ -17,7 +29,11 @@ import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.MockedStatic;
 
+import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -26,20 +42,36 @@ import static org.mockito.Mockito.*;
 class MessageServiceTest {
 
     MessageRepository messageRepository;
+    ArchivedMessageRepository archivedMessageRepository;
     SessionRepository sessionRepository;
     UserRepository userRepository;
     Emitter emitter;
+    MessageOutbox outbox;
+    Event<MessageCreatedEvent> messageCreated;
+    Event<MessageDeletedEvent> messageDeleted;
+    MessageSearchIndex searchIndex;
+    ParticipantCache participantCache;
 
     MessageService messageService;
 
     @BeforeEach
     void setUp() {
         messageRepository = mock(MessageRepository.class);
+        archivedMessageRepository = mock(ArchivedMessageRepository.class);
         sessionRepository = mock(SessionRepository.class);
         userRepository = mock(UserRepository.class);
         emitter = mock(Emitter.class);
-
-        messageService = new MessageService(messageRepository, sessionRepository, userRepository, emitter);
+        outbox = mock(MessageOutbox.class);
+        messageCreated = mock(Event.class);
+        messageDeleted = mock(Event.class);
+        searchIndex = mock(MessageSearchIndex.class);
+        participantCache = mock(ParticipantCache.class);
+
+        messageService = new MessageService(messageRepository, archivedMessageRepository, sessionRepository, userRepository, outbox,
+                messageCreated, messageDeleted, searchIndex, participantCache);
+        // The session rows exist unless a test says otherwise
+        when(sessionRepository.recordMessageAdded(any(), any(), any(), any())).thenReturn(1);
+        when(sessionRepository.recordMessagesAdded(any(), anyLong(), any(), any(), any())).thenReturn(1);
     }
 
     // ---------------- getSessionMessages ----------------
@@ -47,56 +79,107 @@ class MessageServiceTest {
     @Test
     void getSessionMessages_returnsDtos_whenSessionExists() {
         UUID sessionId = UUID.randomUUID();
-        Session session = mock(Session.class);
-        when(sessionRepository.findById(sessionId)).thenReturn(session);
-
-        Message m1 = mock(Message.class);
-        Message m2 = mock(Message.class);
-        when(messageRepository.findBySessionId(sessionId)).thenReturn(List.of(m1, m2));
-
-        try (MockedStatic<DTOMapper> dtoMock = mockStatic(DTOMapper.class)) {
-            MessageDTO dto1 = new MessageDTO();
-            MessageDTO dto2 = new MessageDTO();
-            dtoMock.when(() -> DTOMapper.toMessageDTO(m1)).thenReturn(dto1);
-            dtoMock.when(() -> DTOMapper.toMessageDTO(m2)).thenReturn(dto2);
-
-            List<MessageDTO> result = messageService.getSessionMessages(sessionId);
-            assertEquals(2, result.size());
-            assertSame(dto1, result.get(0));
-            assertSame(dto2, result.get(1));
-        }
+        when(participantCache.requireSession(sessionId)).thenReturn(
+                new SessionParticipants(sessionId, UUID.randomUUID(), UUID.randomUUID(), LocalDateTime.now()));
+
+        MessageDTO dto1 = new MessageDTO();
+        MessageDTO dto2 = new MessageDTO();
+        when(messageRepository.findBySessionIdAsDTO(sessionId)).thenReturn(List.of(dto1, dto2));
+
+        List<MessageDTO> result = messageService.getSessionMessages(sessionId);
+        assertEquals(2, result.size());
+        assertSame(dto1, result.get(0));
+        assertSame(dto2, result.get(1));
+        verify(messageRepository, never()).findBySessionId(any());
     }
 
     @Test
     void getSessionMessages_throws_whenSessionMissing() {
         UUID sessionId = UUID.randomUUID();
-        when(sessionRepository.findById(sessionId)).thenReturn(null);
+        when(participantCache.requireSession(sessionId)).thenThrow(new IllegalArgumentException("Session not found"));
 
         assertThrows(IllegalArgumentException.class,
                 () -> messageService.getSessionMessages(sessionId));
     }
 
+    // ---------------- getSessionMessagesPage ----------------
+
+    @Test
+    void getSessionMessagesPage_returnsLatestPageInChronologicalOrder() {
+        UUID sessionId = UUID.randomUUID();
+
+        MessageDTO newest = messageDTO(sessionId, LocalDateTime.now());
+        MessageDTO middle = messageDTO(sessionId, LocalDateTime.now().minusMinutes(1));
+        MessageDTO oldest = messageDTO(sessionId, LocalDateTime.now().minusMinutes(2));
+        when(messageRepository.findLatestSessionMessagesAsDTO(sessionId, 3)).thenReturn(List.of(newest, middle, oldest));
+
+        MessagePageDTO page = messageService.getSessionMessagesPage(sessionId, null, null, 2);
+        assertEquals(2, page.messages.size());
+        assertEquals(middle.messageId, page.messages.get(0).messageId);
+        assertEquals(newest.messageId, page.messages.get(1).messageId);
+        assertTrue(page.hasMore);
+        assertEquals(middle.messageId, MessageCursor.decode(page.beforeCursor).getMessageId());
+        assertEquals(newest.messageId, MessageCursor.decode(page.afterCursor).getMessageId());
+    }
+
+    @Test
+    void getSessionMessagesPage_usesAfterCursor() {
+        UUID sessionId = UUID.randomUUID();
+        MessageCursor cursor = new MessageCursor(LocalDateTime.now(), UUID.randomUUID());
+
+        MessageDTO next = messageDTO(sessionId, LocalDateTime.now().plusMinutes(1));
+        when(messageRepository.findSessionMessagesAfterAsDTO(sessionId, cursor.getDateTime(), cursor.getMessageId(), 51))
+                .thenReturn(List.of(next));
+
+        MessagePageDTO page = messageService.getSessionMessagesPage(sessionId, null, cursor.encode(), null);
+        assertEquals(1, page.messages.size());
+        assertFalse(page.hasMore);
+    }
+
+    @Test
+    void getSessionMessagesPage_throws_whenBothCursorsGiven() {
+        String cursor = new MessageCursor(LocalDateTime.now(), UUID.randomUUID()).encode();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> messageService.getSessionMessagesPage(UUID.randomUUID(), cursor, cursor, null));
+    }
+
+    @Test
+    void getSessionMessagesPage_throws_whenCursorInvalid() {
+        UUID sessionId = UUID.randomUUID();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> messageService.getSessionMessagesPage(sessionId, "not-a-cursor", null, null));
+    }
+
+    private Message mockMessage(UUID sessionId, LocalDateTime dateTime) {
+        Message message = mock(Message.class);
+        when(message.getMessageId()).thenReturn(UUID.randomUUID());
+        when(message.getSessionId()).thenReturn(sessionId);
+        when(message.getDateTime()).thenReturn(dateTime);
+        return message;
+    }
+
+    private static MessageDTO messageDTO(UUID sessionId, LocalDateTime dateTime) {
+        return new MessageDTO(UUID.randomUUID(), sessionId, UUID.randomUUID(), "content", dateTime);
+    }
+
     // ---------------- getMessageById ----------------
 
     @Test
     void getMessageById_returnsDto_whenMessageExists() {
         UUID messageId = UUID.randomUUID();
-        Message message = mock(Message.class);
-        when(messageRepository.findById(messageId)).thenReturn(message);
-
-        try (MockedStatic<DTOMapper> dtoMock = mockStatic(DTOMapper.class)) {
-            MessageDTO dto = new MessageDTO();
-            dtoMock.when(() -> DTOMapper.toMessageDTO(message)).thenReturn(dto);
+        MessageDTO dto = new MessageDTO();
+        when(messageRepository.findByIdAsDTO(messageId)).thenReturn(dto);
 
-            MessageDTO result = messageService.getMessageById(messageId);
-            assertSame(dto, result);
-        }
+        assertSame(dto, messageService.getMessageById(messageId));
+        verify(messageRepository, never()).findById(any());
     }
 
     @Test
     void getMessageById_throws_whenMissing() {
         UUID messageId = UUID.randomUUID();
-        when(messageRepository.findById(messageId)).thenReturn(null);
+        when(messageRepository.findByIdAsDTO(messageId)).thenReturn(null);
 
         assertThrows(IllegalArgumentException.class,
                 () -> messageService.getMessageById(messageId));
@@ -107,25 +190,33 @@ class MessageServiceTest {
     @Test
     void getLatestMessage_returnsDto_whenSessionAndMessageExist() {
         UUID sessionId = UUID.randomUUID();
-        Session session = mock(Session.class);
-        when(sessionRepository.findById(sessionId)).thenReturn(session);
-
-        Message latest = mock(Message.class);
-        when(messageRepository.findLatestMessageInSession(sessionId)).thenReturn(latest);
+        UUID latestId = UUID.randomUUID();
+        SessionDTO session = new SessionDTO();
+        session.lastMessageId = latestId;
+        session.lastActivity = LocalDateTime.now();
+        when(sessionRepository.findByIdAsDTO(sessionId)).thenReturn(session);
+
+        MessageDTO latest = new MessageDTO();
+        when(messageRepository.findByIdAsDTO(latestId, session.lastActivity)).thenReturn(latest);
+
+        assertSame(latest, messageService.getLatestMessage(sessionId));
+        verify(messageRepository, never()).findLatestMessageInSession(any());
+        verify(messageRepository, never()).findByIdAsDTO(latestId);
+    }
 
-        try (MockedStatic<DTOMapper> dtoMock = mockStatic(DTOMapper.class)) {
-            MessageDTO dto = new MessageDTO();
-            dtoMock.when(() -> DTOMapper.toMessageDTO(latest)).thenReturn(dto);
+    @Test
+    void getLatestMessage_returnsNull_whenSessionHasNoMessages() {
+        UUID sessionId = UUID.randomUUID();
+        when(sessionRepository.findByIdAsDTO(sessionId)).thenReturn(new SessionDTO());
 
-            MessageDTO result = messageService.getLatestMessage(sessionId);
-            assertSame(dto, result);
-        }
+        assertNull(messageService.getLatestMessage(sessionId));
+        verifyNoInteractions(messageRepository);
     }
 
     @Test
     void getLatestMessage_throws_whenSessionMissing() {
         UUID sessionId = UUID.randomUUID();
-        when(sessionRepository.findById(sessionId)).thenReturn(null);
+        when(sessionRepository.findByIdAsDTO(sessionId)).thenReturn(null);
 
         assertThrows(IllegalArgumentException.class,
                 () -> messageService.getLatestMessage(sessionId));
@@ -136,40 +227,69 @@ class MessageServiceTest {
     @Test
     void searchMessages_throws_whenSearchTermEmpty() {
         assertThrows(IllegalArgumentException.class,
-                () -> messageService.searchMessages(null));
+                () -> messageService.searchMessages(null, null, 0, null));
         assertThrows(IllegalArgumentException.class,
-                () -> messageService.searchMessages(""));
+                () -> messageService.searchMessages("", null, 0, null));
     }
 
     @Test
-    void searchMessages_returnsDtos_whenValidTerm() {
+    void searchMessages_throws_whenPageSizeTooLarge() {
+        assertThrows(IllegalArgumentException.class,
+                () -> messageService.searchMessages("abc", null, 0, MessageService.MAX_SEARCH_PAGE_SIZE + 1));
+    }
+
+    @Test
+    void searchMessages_returnsDtosInRankOrder_whenValidTerm() {
         String term = "abc";
-        Message m1 = mock(Message.class);
-        Message m2 = mock(Message.class);
-        when(messageRepository.searchByMessageContent(term)).thenReturn(List.of(m1, m2));
+        UUID userId = UUID.randomUUID();
+        MessageDTO m1 = messageDTO(UUID.randomUUID(), LocalDateTime.now());
+        MessageDTO m2 = messageDTO(UUID.randomUUID(), LocalDateTime.now());
+        UUID deletedId = UUID.randomUUID();
+        List<UUID> ranked = List.of(m2.messageId, deletedId, m1.messageId);
+        when(searchIndex.search(term, userId, 0, MessageService.DEFAULT_SEARCH_PAGE_SIZE)).thenReturn(ranked);
+        when(messageRepository.findByIdsAsDTO(ranked)).thenReturn(List.of(m1, m2));
+
+        List<MessageDTO> result = messageService.searchMessages(term, userId, 0, null);
+        assertEquals(2, result.size());
+        assertSame(m2, result.get(0));
+        assertSame(m1, result.get(1));
+    }
 
-        try (MockedStatic<DTOMapper> dtoMock = mockStatic(DTOMapper.class)) {
-            MessageDTO dto1 = new MessageDTO();
-            MessageDTO dto2 = new MessageDTO();
-            dtoMock.when(() -> DTOMapper.toMessageDTO(m1)).thenReturn(dto1);
-            dtoMock.when(() -> DTOMapper.toMessageDTO(m2)).thenReturn(dto2);
-
-            List<MessageDTO> result = messageService.searchMessages(term);
-            assertEquals(2, result.size());
-            assertSame(dto1, result.get(0));
-            assertSame(dto2, result.get(1));
-        }
+    @Test
+    void searchMessages_returnsMessageOnce_whenArchivedBetweenReads() {
+        String term = "abc";
+        MessageDTO live = messageDTO(UUID.randomUUID(), LocalDateTime.now());
+        MessageDTO moved = messageDTO(UUID.randomUUID(), LocalDateTime.now());
+        MessageDTO archived = new MessageDTO(moved.messageId, moved.sessionId, moved.senderId, moved.message, moved.dateTime);
+        UUID missingId = UUID.randomUUID();
+        List<UUID> ranked = List.of(moved.messageId, live.messageId, missingId);
+        when(searchIndex.search(term, null, 0, MessageService.DEFAULT_SEARCH_PAGE_SIZE)).thenReturn(ranked);
+        when(messageRepository.findByIdsAsDTO(ranked)).thenReturn(List.of(live, moved));
+        when(archivedMessageRepository.findMessages(ranked)).thenReturn(List.of(archived));
+
+        List<MessageDTO> result = messageService.searchMessages(term, null, 0, null);
+        assertEquals(2, result.size());
+        assertSame(moved, result.get(0));
+        assertSame(live, result.get(1));
     }
 
     // ---------------- countSessionMessages ----------------
 
     @Test
-    void countSessionMessages_returnsCountFromRepo() {
+    void countSessionMessages_returnsCountFromSessionSummary() {
         UUID sessionId = UUID.randomUUID();
-        when(messageRepository.countBySession(sessionId)).thenReturn(5L);
+        SessionDTO session = new SessionDTO();
+        session.messageCount = 5L;
+        when(sessionRepository.findByIdAsDTO(sessionId)).thenReturn(session);
 
         long count = messageService.countSessionMessages(sessionId);
         assertEquals(5L, count);
+        verify(messageRepository, never()).countBySession(any());
+    }
+
+    @Test
+    void countSessionMessages_returnsZero_whenSessionMissing() {
+        assertEquals(0L, messageService.countSessionMessages(UUID.randomUUID()));
     }
 
     // ---------------- createMessage ----------------
@@ -214,7 +334,7 @@ class MessageServiceTest {
         dto.senderId = UUID.randomUUID();
         dto.message = "hello";
 
-        when(sessionRepository.findById(dto.sessionId)).thenReturn(null);
+        when(participantCache.requireSession(dto.sessionId)).thenThrow(new IllegalArgumentException("Session not found"));
 
         assertThrows(IllegalArgumentException.class,
                 () -> messageService.createMessage(dto));
@@ -227,12 +347,75 @@ class MessageServiceTest {
         dto.senderId = UUID.randomUUID();
         dto.message = "hello";
 
-        Session session = mock(Session.class);
-        when(sessionRepository.findById(dto.sessionId)).thenReturn(session);
-        when(userRepository.findById(dto.senderId)).thenReturn(null);
+        when(participantCache.requireSession(dto.sessionId))
+                .thenReturn(new SessionParticipants(dto.sessionId, dto.senderId, UUID.randomUUID()));
+        when(participantCache.userExists(dto.senderId)).thenReturn(false);
 
         assertThrows(IllegalArgumentException.class,
                 () -> messageService.createMessage(dto));
+        verify(messageRepository, never()).persist(any(Message.class));
+    }
+
+    @Test
+    void createMessage_throwsAndEvicts_whenCachedSessionWasDeleted() {
+        UUID sessionId = UUID.randomUUID();
+        UUID patientId = UUID.randomUUID();
+        UUID doctorId = UUID.randomUUID();
+        when(participantCache.requireSession(sessionId)).thenReturn(new SessionParticipants(sessionId, patientId, doctorId));
+        when(participantCache.userExists(doctorId)).thenReturn(true);
+        EntityManager entityManager = mock(EntityManager.class);
+        when(sessionRepository.getEntityManager()).thenReturn(entityManager);
+        when(userRepository.getEntityManager()).thenReturn(entityManager);
+        when(entityManager.getReference(Session.class, sessionId)).thenReturn(mock(Session.class));
+        when(entityManager.getReference(User.class, doctorId)).thenReturn(mock(User.class));
+        when(sessionRepository.recordMessageAdded(eq(sessionId), any(), any(), any())).thenReturn(0);
+
+        MessageDTO input = new MessageDTO();
+        input.sessionId = sessionId;
+        input.senderId = doctorId;
+        input.message = "hello";
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> messageService.createMessage(input));
+        assertEquals("Session not found", e.getMessage());
+        verify(participantCache).evictSession(sessionId);
+        verify(sessionRepository, never()).findEventSequence(any());
+        verifyNoInteractions(outbox, messageCreated);
+    }
+
+    @Test
+    void createMessage_usesCachedParticipants_insteadOfLoadingRows() {
+        UUID sessionId = UUID.randomUUID();
+        UUID patientId = UUID.randomUUID();
+        UUID doctorId = UUID.randomUUID();
+        when(participantCache.requireSession(sessionId)).thenReturn(new SessionParticipants(sessionId, patientId, doctorId));
+        when(participantCache.userExists(doctorId)).thenReturn(true);
+
+        EntityManager entityManager = mock(EntityManager.class);
+        Session sessionRef = mock(Session.class);
+        when(sessionRef.getSessionId()).thenReturn(sessionId);
+        User senderRef = mock(User.class);
+        when(senderRef.getId()).thenReturn(doctorId);
+        when(entityManager.getReference(Session.class, sessionId)).thenReturn(sessionRef);
+        when(entityManager.getReference(User.class, doctorId)).thenReturn(senderRef);
+        when(sessionRepository.getEntityManager()).thenReturn(entityManager);
+        when(userRepository.getEntityManager()).thenReturn(entityManager);
+
+        MessageDTO input = new MessageDTO();
+        input.sessionId = sessionId;
+        input.senderId = doctorId;
+        input.message = "hello";
+
+        MessageDTO result = messageService.createMessage(input);
+
+        assertEquals(sessionId, result.sessionId);
+        verify(messageRepository).persist(any(Message.class));
+        verify(sessionRepository, never()).findById(any());
+        verify(userRepository, never()).findById(any());
+        ArgumentCaptor<MessageCreatedEvent> eventCaptor = ArgumentCaptor.forClass(MessageCreatedEvent.class);
+        verify(messageCreated).fire(eventCaptor.capture());
+        assertEquals(patientId, eventCaptor.getValue().receiverId);
+        verify(outbox).enqueue(eventCaptor.getValue());
+        verifyNoInteractions(emitter);
     }
 
     @Test
@@ -270,7 +453,8 @@ class MessageServiceTest {
 
             dtoMock.when(() -> DTOMapper.toMessageDTO(any(Message.class))).thenReturn(mapped);
 
-            MessageService testService = new MessageService(messageRepository, sessionRepository, userRepository, emitter) {
+            MessageService testService = new MessageService(messageRepository, mock(ArchivedMessageRepository.class), sessionRepository, userRepository, outbox,
+                    messageCreated, messageDeleted, searchIndex, participantCache) {
                 @Override
                 public MessageDTO createMessage(MessageDTO dto) {
 
@@ -310,23 +494,130 @@ class MessageServiceTest {
     }
 
 
+    // ---------------- createMessages ----------------
+
+    @Test
+    void createMessages_throws_whenBatchEmptyOrTooLarge() {
+        assertThrows(IllegalArgumentException.class, () -> messageService.createMessages(List.of()));
+        List<MessageDTO> tooMany = Collections.nCopies(MessageService.MAX_BATCH_SIZE + 1, new MessageDTO());
+        assertThrows(IllegalArgumentException.class, () -> messageService.createMessages(tooMany));
+    }
+
+    @Test
+    void createMessages_storesValidItems_andReportsRejectedByIndex() {
+        UUID sessionId = UUID.randomUUID();
+        UUID senderId = UUID.randomUUID();
+        UUID unknownSession = UUID.randomUUID();
+        when(participantCache.findSessions(Set.of(sessionId, unknownSession)))
+                .thenReturn(Map.of(sessionId, new SessionParticipants(sessionId, senderId, UUID.randomUUID())));
+        when(participantCache.findExistingUsers(Set.of(senderId))).thenReturn(Set.of(senderId));
+        EntityManager entityManager = mock(EntityManager.class);
+        Session sessionRef = mock(Session.class);
+        when(sessionRef.getSessionId()).thenReturn(sessionId);
+        User senderRef = mock(User.class);
+        when(senderRef.getId()).thenReturn(senderId);
+        when(entityManager.getReference(Session.class, sessionId)).thenReturn(sessionRef);
+        when(entityManager.getReference(User.class, senderId)).thenReturn(senderRef);
+        when(sessionRepository.getEntityManager()).thenReturn(entityManager);
+        when(userRepository.getEntityManager()).thenReturn(entityManager);
+
+        List<MessageDTO> batch = List.of(
+                new MessageDTO(null, sessionId, senderId, "one", null),
+                new MessageDTO(null, unknownSession, senderId, "lost", null),
+                new MessageDTO(null, sessionId, senderId, "", null),
+                new MessageDTO(null, sessionId, senderId, "two", null));
+
+        MessageBatchResultDTO result = messageService.createMessages(batch);
+
+        assertEquals(2, result.created.size());
+        assertEquals("one", result.created.get(0).message);
+        assertEquals("two", result.created.get(1).message);
+        assertEquals(2, result.errors.size());
+        assertEquals(1, result.errors.get(0).index);
+        assertEquals("Session not found", result.errors.get(0).error);
+        assertEquals(2, result.errors.get(1).index);
+        verify(messageRepository, times(2)).persist(any(Message.class));
+        verify(sessionRepository).recordMessagesAdded(eq(sessionId), eq(2L), any(), eq("two"), any());
+        verify(messageCreated, times(2)).fire(any(MessageCreatedEvent.class));
+        verify(outbox, times(2)).enqueue(any(MessageCreatedEvent.class));
+    }
+
     // ---------------- deleteMessage ----------------
 
     @Test
-    void deleteMessage_returnsTrue_whenRepoDeletes() {
+    void deleteMessage_updatesSummary_whenMessageExists() {
         UUID messageId = UUID.randomUUID();
-        when(messageRepository.deleteById(messageId)).thenReturn(true);
+        UUID sessionId = UUID.randomUUID();
+        Message message = mockMessage(sessionId, LocalDateTime.now());
+        when(messageRepository.findById(messageId)).thenReturn(message);
+        Session session = mock(Session.class);
+        when(session.getLastMessageId()).thenReturn(UUID.randomUUID());
+        when(sessionRepository.findById(sessionId)).thenReturn(session);
 
         boolean result = messageService.deleteMessage(messageId);
         assertTrue(result);
+        verify(messageRepository).delete(message);
+        verify(sessionRepository).recordMessageRemoved(sessionId);
+        verify(sessionRepository, never()).updateLastMessage(any(), any(), any(), any());
+        ArgumentCaptor<MessageDeletedEvent> eventCaptor = ArgumentCaptor.forClass(MessageDeletedEvent.class);
+        verify(messageDeleted).fire(eventCaptor.capture());
+        assertEquals(messageId, eventCaptor.getValue().messageId);
+        assertEquals(sessionId, eventCaptor.getValue().sessionId);
     }
 
     @Test
-    void deleteMessage_returnsFalse_whenRepoFails() {
+    void deleteMessage_recomputesLastMessage_whenLatestDeleted() {
         UUID messageId = UUID.randomUUID();
-        when(messageRepository.deleteById(messageId)).thenReturn(false);
+        UUID sessionId = UUID.randomUUID();
+        Message message = mockMessage(sessionId, LocalDateTime.now());
+        when(messageRepository.findById(messageId)).thenReturn(message);
+        Session session = mock(Session.class);
+        when(session.getLastMessageId()).thenReturn(messageId);
+        when(sessionRepository.findById(sessionId)).thenReturn(session);
+        Message previous = mockMessage(sessionId, LocalDateTime.now().minusMinutes(1));
+        when(previous.getMessage()).thenReturn("earlier");
+        when(messageRepository.findLatestMessageInSession(sessionId)).thenReturn(previous);
+
+        assertTrue(messageService.deleteMessage(messageId));
+        verify(sessionRepository).updateLastMessage(sessionId, previous.getMessageId(), "earlier", previous.getDateTime());
+    }
+
+    @Test
+    void deleteMessage_clearsLastMessage_whenSessionBecomesEmpty() {
+        UUID messageId = UUID.randomUUID();
+        UUID sessionId = UUID.randomUUID();
+        LocalDateTime created = LocalDateTime.now().minusDays(1);
+        Message message = mockMessage(sessionId, LocalDateTime.now());
+        when(messageRepository.findById(messageId)).thenReturn(message);
+        Session session = mock(Session.class);
+        when(session.getLastMessageId()).thenReturn(messageId);
+        when(session.getCreationDate()).thenReturn(created);
+        when(sessionRepository.findById(sessionId)).thenReturn(session);
+
+        assertTrue(messageService.deleteMessage(messageId));
+        verify(sessionRepository).updateLastMessage(sessionId, null, null, created);
+    }
+
+    @Test
+    void deleteMessage_returnsFalse_whenMessageMissing() {
+        UUID messageId = UUID.randomUUID();
+        when(messageRepository.findById(messageId)).thenReturn(null);
 
         boolean result = messageService.deleteMessage(messageId);
         assertFalse(result);
+        verify(messageRepository, never()).delete(any(Message.class));
+        verifyNoInteractions(sessionRepository, messageDeleted);
+    }
+
+    // ---------------- preview ----------------
+
+    @Test
+    void preview_truncatesOnCodePointBoundary() {
+        String content = "a".repeat(MessageService.PREVIEW_LENGTH - 1) + "\uD83D\uDE00" + "tail";
+
+        String preview = MessageService.preview(content);
+        assertEquals(MessageService.PREVIEW_LENGTH, preview.codePointCount(0, preview.length()));
+        assertTrue(preview.endsWith("\uD83D\uDE00"));
+        assertEquals("short", MessageService.preview("short"));
     }
 }
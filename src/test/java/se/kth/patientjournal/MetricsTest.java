@@ -0,0 +1,80 @@
+package se.kth.patientjournal;
+
+import core.enums.UserType;
+import data.entities.Session;
+import data.entities.User;
+import data.repositories.SessionRepository;
+import data.repositories.UserRepository;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+class MetricsTest {
+
+    private static final Pattern UUID_PATTERN =
+            Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+
+    @Inject
+    SessionRepository sessionRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    @Test
+    void repositoryCalls_areTimedWithRowCounts() {
+        UUID doctorId = QuarkusTransaction.requiringNew().call(() -> {
+            User doctor = new User("Metrics Doctor", "metrics-doctor@example.com", "password", UserType.Doctor);
+            User patient = new User("Metrics Patient", "metrics-patient@example.com", "password", UserType.Patient);
+            userRepository.persist(doctor);
+            userRepository.persist(patient);
+            sessionRepository.persist(new Session(patient.getId(), doctor.getId(), "Metrics", LocalDateTime.now()));
+            return doctor.getId();
+        });
+
+        List<Session> sessions = QuarkusTransaction.requiringNew().call(() -> sessionRepository.findAllUserSessions(doctorId));
+        assertEquals(1, sessions.size());
+
+        String metrics = scrape();
+        assertTrue(hasLine(metrics, "repository_query_seconds_count", "method=\"findAllUserSessions\"",
+                "outcome=\"success\"", "repository=\"SessionRepository\""), metrics);
+        assertTrue(hasLine(metrics, "repository_query_seconds_bucket", "method=\"findAllUserSessions\""));
+        assertTrue(hasLine(metrics, "repository_query_rows_sum", "method=\"findAllUserSessions\""));
+    }
+
+    @Test
+    void endpointTimers_useThePathTemplate() {
+        given().get("/messages/session/" + UUID.randomUUID());
+
+        String metrics = scrape();
+        assertTrue(hasLine(metrics, "http_server_requests_seconds_bucket", "uri=\"/messages/session/{sessionId}\""), metrics);
+        metrics.lines()
+                .filter(line -> line.startsWith("http_server_requests") || line.startsWith("repository_query"))
+                .forEach(line -> assertFalse(UUID_PATTERN.matcher(line).find(), line));
+    }
+
+    @Test
+    void poolAndHibernateMetrics_areExported() {
+        String metrics = scrape();
+        assertTrue(metrics.contains("agroal_blocking_time_total_milliseconds"), metrics);
+        assertTrue(metrics.contains("hibernate_query_executions_total"), metrics);
+    }
+
+    private static String scrape() {
+        return given().get("/q/metrics").then().statusCode(200).extract().asString();
+    }
+
+    private static boolean hasLine(String metrics, String name, String... labels) {
+        return metrics.lines().anyMatch(line -> line.startsWith(name + "{")
+                && List.of(labels).stream().allMatch(line::contains));
+    }
+}
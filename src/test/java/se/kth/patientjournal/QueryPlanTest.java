@@ -0,0 +1,114 @@
+package se.kth.patientjournal;
+
+import data.repositories.MessageRepository;
+import data.repositories.SessionRepository;
+import data.repositories.UserRepository;
+import io.agroal.api.AgroalDataSource;
+import io.quarkus.test.TestTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs every hot repository query, captures the SQL Hibernate generates for it and
+ * checks with EXPLAIN that the database answers it from an index instead of a table scan.
+ * Substring searches (LIKE '%term%') and full-history scans are excluded on purpose.
+ */
+@QuarkusTest
+class QueryPlanTest {
+
+    @Inject
+    MessageRepository messageRepository;
+
+    @Inject
+    SessionRepository sessionRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Test
+    @TestTransaction
+    void repositoryQueries_useIndexes() throws SQLException {
+        UUID id = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+        LocalDateTime now = LocalDateTime.now();
+
+        RecordingStatementInspector.start();
+        List<String> statements;
+        try {
+            messageRepository.findById(id);
+            messageRepository.findBySessionId(id);
+            try (var messages = messageRepository.streamBySessionId(id)) {
+                messages.forEach(m -> { });
+            }
+            messageRepository.findBySessionIds(List.of(id, other));
+            messageRepository.findBySenderId(id);
+            messageRepository.findLatestSessionMessages(id, 10);
+            messageRepository.findSessionMessagesBefore(id, now, other, 10);
+            messageRepository.findSessionMessagesAfter(id, now, other, 10);
+            messageRepository.findSessionMessagesWithPagination(id, 0, 10);
+            messageRepository.countBySession(id);
+            messageRepository.findLatestMessageInSession(id);
+            messageRepository.findBySessionIdWithRelations(id);
+            messageRepository.findLatestMessageInSessionWithRelations(id);
+            sessionRepository.findById(id);
+            sessionRepository.findBySenderId(id);
+            sessionRepository.findByReceiverId(id);
+            sessionRepository.findSessionsBetweenUsers(id, other);
+            sessionRepository.findAllUserSessions(id);
+            sessionRepository.countUserSessions(id);
+            sessionRepository.findAllUserSessionsWithMessages(id);
+            sessionRepository.findUserSessionsByActivity(id, 10);
+            sessionRepository.recordMessageAdded(id, other, "preview", now);
+            sessionRepository.recordMessageRemoved(id);
+            sessionRepository.updateLastMessage(id, other, "preview", now);
+            userRepository.findById(id);
+            userRepository.findByEmail("nobody@example.com");
+            userRepository.findExistingIds(List.of(id, other));
+        } finally {
+            statements = RecordingStatementInspector.stop();
+        }
+
+        assertFalse(statements.isEmpty());
+        List<String> scans = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection()) {
+            for (String sql : statements) {
+                String plan = explain(connection, sql);
+                if (plan.contains(".tableScan")) {
+                    scans.add(sql + "\n" + plan);
+                }
+            }
+        }
+        assertTrue(scans.isEmpty(), "Queries without index access:\n" + String.join("\n\n", scans));
+    }
+
+    private String explain(Connection connection, String sql) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+            int parameters = statement.getParameterMetaData().getParameterCount();
+            for (int i = 1; i <= parameters; i++) {
+                statement.setObject(i, null);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                StringBuilder plan = new StringBuilder();
+                while (rs.next()) {
+                    plan.append(rs.getString(1));
+                }
+                return plan.toString();
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package se.kth.patientjournal;
+
+import api.dto.MessageDTO;
+import core.enums.UserType;
+import core.routing.ReadRouting;
+import core.services.MessageService;
+import data.entities.Session;
+import data.entities.User;
+import data.repositories.SessionRepository;
+import data.repositories.UserRepository;
+import io.agroal.api.AgroalDataSource;
+import io.quarkus.agroal.DataSource;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.http.ContentType;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs with a replica that has the schema but none of the rows, so a read answered from
+ * it cannot find what the primary has.
+ */
+@QuarkusTest
+@TestProfile(ReadReplicaRoutingTest.SeparateReplica.class)
+@TestSecurity(user = "replica-doctor", roles = "Doctor")
+class ReadReplicaRoutingTest {
+
+    public static class SeparateReplica implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of("quarkus.datasource.\"replica\".jdbc.url", "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1");
+        }
+    }
+
+    @Inject
+    MessageService messageService;
+
+    @Inject
+    SessionRepository sessionRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    @Inject
+    AgroalDataSource primary;
+
+    @Inject
+    @DataSource("replica")
+    AgroalDataSource replica;
+
+    UUID sessionId;
+    UUID patientId;
+    UUID messageId;
+
+    @BeforeEach
+    void createSessionOnPrimary() throws SQLException {
+        copySchemaToReplica();
+        String suffix = UUID.randomUUID().toString();
+        QuarkusTransaction.requiringNew().run(() -> {
+            User doctor = new User("Replica Doctor", "doctor-" + suffix + "@example.com", "password", UserType.Doctor);
+            User patient = new User("Replica Patient", "patient-" + suffix + "@example.com", "password", UserType.Patient);
+            userRepository.persist(doctor);
+            userRepository.persist(patient);
+            Session session = new Session(patient.getId(), doctor.getId(), "Replica", LocalDateTime.now());
+            sessionRepository.persist(session);
+            sessionId = session.getSessionId();
+            patientId = patient.getId();
+        });
+        MessageDTO dto = new MessageDTO();
+        dto.sessionId = sessionId;
+        dto.senderId = patientId;
+        dto.message = "on the primary";
+        messageId = QuarkusTransaction.requiringNew().call(() -> messageService.createMessage(dto)).messageId;
+    }
+
+    @Test
+    void readsOutsideATransaction_goToTheReplica_unlessTheClientJustWrote() {
+        // The service answers a missing message with an error rather than a 404
+        given().get("/messages/" + messageId).then().statusCode(500);
+
+        MessageDTO dto = new MessageDTO();
+        dto.sessionId = sessionId;
+        dto.senderId = patientId;
+        dto.message = "written by this client";
+        String lastWrite = given().contentType(ContentType.JSON).body(dto).post("/messages")
+                .then().statusCode(200)
+                .extract().cookie(ReadRouting.LAST_WRITE_COOKIE);
+        assertNotNull(lastWrite);
+
+        // The write time travels with the client, so whichever node serves the read can tell;
+        // a client without it, or with an expired one, still reads the replica
+        given().cookie(ReadRouting.LAST_WRITE_COOKIE, lastWrite)
+                .get("/messages/" + messageId).then().statusCode(200);
+        given().get("/messages/" + messageId).then().statusCode(500);
+        given().cookie(ReadRouting.LAST_WRITE_COOKIE, System.currentTimeMillis() - 60_000)
+                .get("/messages/" + messageId).then().statusCode(500);
+    }
+
+    @Test
+    void readsInATransaction_goToThePrimary() {
+        assertEquals("on the primary",
+                QuarkusTransaction.requiringNew().call(() -> messageService.getMessageById(messageId)).message);
+    }
+
+    private void copySchemaToReplica() throws SQLException {
+        List<String> script = new ArrayList<>();
+        try (Connection connection = primary.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SCRIPT NODATA")) {
+            while (rows.next()) {
+                script.add(rows.getString(1));
+            }
+        }
+        try (Connection connection = replica.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+            for (String sql : script) {
+                statement.execute(sql);
+            }
+        }
+    }
+}
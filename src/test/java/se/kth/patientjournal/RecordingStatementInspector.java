@@ -0,0 +1,33 @@
+package se.kth.patientjournal;
+
+import io.quarkus.hibernate.orm.PersistenceUnitExtension;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Records the SQL Hibernate sends while recording is switched on, so tests can inspect it */
+@PersistenceUnitExtension
+public class RecordingStatementInspector implements StatementInspector {
+
+    private static final ThreadLocal<List<String>> RECORDED = new ThreadLocal<>();
+
+    public static void start() {
+        RECORDED.set(new ArrayList<>());
+    }
+
+    public static List<String> stop() {
+        List<String> statements = RECORDED.get();
+        RECORDED.remove();
+        return statements != null ? statements : List.of();
+    }
+
+    @Override
+    public String inspect(String sql) {
+        List<String> statements = RECORDED.get();
+        if (statements != null) {
+            statements.add(sql);
+        }
+        return sql;
+    }
+}
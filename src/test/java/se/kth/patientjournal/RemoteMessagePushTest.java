@@ -0,0 +1,109 @@
+package se.kth.patientjournal;
+
+import api.dto.MessageCreatedEvent;
+import api.dto.MessageDTO;
+import core.push.MessagePushRegistry;
+import core.push.RemoteMessageConsumer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.helpers.test.AssertSubscriber;
+import io.smallrye.reactive.messaging.memory.InMemoryConnector;
+import io.smallrye.reactive.messaging.memory.InMemorySource;
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.inject.Any;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+class RemoteMessagePushTest {
+
+    @Inject
+    MessagePushRegistry pushRegistry;
+
+    @Inject
+    Event<MessageCreatedEvent> messageCreated;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    @Any
+    InMemoryConnector connector;
+
+    @Test
+    void remoteEvent_isPushedToLocalParticipants() {
+        MessageCreatedEvent event = event();
+        AssertSubscriber<MessageDTO> receiver = pushRegistry.subscribe(event.receiverId)
+                .subscribe().withSubscriber(AssertSubscriber.create(10));
+        AssertSubscriber<MessageDTO> sender = pushRegistry.subscribe(event.senderId)
+                .subscribe().withSubscriber(AssertSubscriber.create(10));
+        long delays = registry.timer(RemoteMessageConsumer.DELAY_TIMER).count();
+
+        connector.<MessageCreatedEvent>source("message-events-in").send(event);
+
+        receiver.awaitItems(1, Duration.ofSeconds(5));
+        sender.awaitItems(1, Duration.ofSeconds(5));
+        assertEquals(event.messageId, receiver.getItems().get(0).messageId);
+        assertEquals(event.content, receiver.getItems().get(0).message);
+        assertEquals(delays + 1, registry.timer(RemoteMessageConsumer.DELAY_TIMER).count());
+        receiver.cancel();
+        sender.cancel();
+    }
+
+    @Test
+    void redeliveredEvent_isPushedOnce() {
+        MessageCreatedEvent event = event();
+        MessageCreatedEvent next = event();
+        next.receiverId = event.receiverId;
+        AssertSubscriber<MessageDTO> receiver = pushRegistry.subscribe(event.receiverId)
+                .subscribe().withSubscriber(AssertSubscriber.create(10));
+        double duplicates = registry.counter(MessagePushRegistry.DUPLICATES_COUNTER).count();
+
+        InMemorySource<MessageCreatedEvent> source = connector.source("message-events-in");
+        source.send(event);
+        source.send(event);
+        source.send(next);
+
+        receiver.awaitItems(2, Duration.ofSeconds(5));
+        assertEquals(event.messageId, receiver.getItems().get(0).messageId);
+        assertEquals(next.messageId, receiver.getItems().get(1).messageId);
+        assertEquals(duplicates + 1, registry.counter(MessagePushRegistry.DUPLICATES_COUNTER).count());
+        receiver.cancel();
+    }
+
+    @Test
+    void kafkaCopyOfLocalMessage_isDropped() {
+        MessageCreatedEvent event = event();
+        MessageCreatedEvent next = event();
+        next.receiverId = event.receiverId;
+        AssertSubscriber<MessageDTO> receiver = pushRegistry.subscribe(event.receiverId)
+                .subscribe().withSubscriber(AssertSubscriber.create(10));
+
+        QuarkusTransaction.requiringNew().run(() -> messageCreated.fire(event));
+        InMemorySource<MessageCreatedEvent> source = connector.source("message-events-in");
+        source.send(event);
+        source.send(next);
+
+        receiver.awaitItems(2, Duration.ofSeconds(5));
+        assertEquals(event.messageId, receiver.getItems().get(0).messageId);
+        assertEquals(next.messageId, receiver.getItems().get(1).messageId);
+        receiver.cancel();
+    }
+
+    private static MessageCreatedEvent event() {
+        MessageCreatedEvent event = new MessageCreatedEvent();
+        event.messageId = UUID.randomUUID();
+        event.sessionId = UUID.randomUUID();
+        event.senderId = UUID.randomUUID();
+        event.receiverId = UUID.randomUUID();
+        event.content = "remote push test";
+        event.timestamp = System.currentTimeMillis();
+        return event;
+    }
+}
@@ -0,0 +1,101 @@
+package se.kth.patientjournal;
+
+import api.dto.MessageDTO;
+import api.dto.MessagePageDTO;
+import core.enums.UserType;
+import core.services.MessageService;
+import data.entities.Session;
+import data.entities.User;
+import data.repositories.SessionRepository;
+import data.repositories.UserRepository;
+import io.agroal.api.AgroalDataSource;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Builds the schema from the Liquibase changelogs on MySQL, which Dev Services starts in a
+ * container, and has Hibernate validate the entities against it; the other tests let
+ * Hibernate create the schema on H2, so they never run a migration. A migration that drifts
+ * from the entities fails startup. Needs Docker, so it only runs with {@code -Dmigrations}.
+ */
+@QuarkusTest
+@TestProfile(SchemaMigrationTest.MigratedMySql.class)
+class SchemaMigrationTest {
+
+    public static class MigratedMySql implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            // Empty values unset the H2 settings, so Dev Services provides the database
+            return Map.of(
+                    "quarkus.datasource.db-kind", "mysql",
+                    "quarkus.datasource.jdbc.url", "",
+                    "quarkus.datasource.username", "",
+                    "quarkus.datasource.password", "",
+                    "quarkus.datasource.\"replica\".devservices.enabled", "false",
+                    "replica-routing.enabled", "false",
+                    "quarkus.liquibase.migrate-at-start", "true",
+                    "quarkus.hibernate-orm.database.generation", "validate");
+        }
+    }
+
+    @Inject
+    MessageService messageService;
+
+    @Inject
+    SessionRepository sessionRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    UUID sessionId;
+    UUID patientId;
+
+    @Test
+    void changelogs_buildTheSchemaTheEntitiesUse() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet applied = statement.executeQuery(
+                     "SELECT COUNT(*) FROM messageservice_changelog WHERE id = '013-session-deletion-jobs'")) {
+            applied.next();
+            assertEquals(1, applied.getInt(1));
+        }
+
+        String suffix = UUID.randomUUID().toString();
+        QuarkusTransaction.requiringNew().run(() -> {
+            User doctor = new User("Migrated Doctor", "doctor-" + suffix + "@example.com", "password", UserType.Doctor);
+            User patient = new User("Migrated Patient", "patient-" + suffix + "@example.com", "password", UserType.Patient);
+            userRepository.persist(doctor);
+            userRepository.persist(patient);
+            Session session = new Session(patient.getId(), doctor.getId(), "Migrated", LocalDateTime.now());
+            sessionRepository.persist(session);
+            sessionId = session.getSessionId();
+            patientId = patient.getId();
+        });
+        MessageDTO dto = new MessageDTO();
+        dto.sessionId = sessionId;
+        dto.senderId = patientId;
+        dto.message = "stored in the migrated schema";
+        messageService.createMessage(dto);
+
+        MessagePageDTO page = messageService.getSessionMessagesPage(sessionId, null, null, null);
+        assertEquals(1, page.messages.size());
+        assertEquals("stored in the migrated schema", page.messages.get(0).message);
+    }
+}
@@ -0,0 +1,219 @@
+package se.kth.patientjournal;
+
+import api.dto.MessageDTO;
+import api.dto.SessionDeletedEvent;
+import core.cache.ParticipantCache;
+import core.enums.UserType;
+import core.search.MessageSearchIndex;
+import core.services.MessageService;
+import core.services.SessionDeletionJobs;
+import core.services.SessionService;
+import data.entities.Message;
+import data.entities.Session;
+import data.entities.SessionDeletionJob;
+import data.entities.User;
+import data.repositories.MessageRepository;
+import data.repositories.SessionDeletionJobRepository;
+import data.repositories.SessionRepository;
+import data.repositories.UserRepository;
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheName;
+import io.quarkus.cache.CaffeineCache;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.response.Response;
+import io.smallrye.reactive.messaging.memory.InMemoryConnector;
+import jakarta.enterprise.inject.Any;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.endsWith;
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+@TestSecurity(user = "deleting-doctor", roles = "Doctor")
+class SessionDeletionTest {
+
+    // The test chunk size is 2, so this takes several chunks
+    private static final int MESSAGES = 7;
+
+    @Inject
+    SessionService sessionService;
+
+    @Inject
+    MessageService messageService;
+
+    @Inject
+    MessageSearchIndex searchIndex;
+
+    @Inject
+    MessageRepository messageRepository;
+
+    @Inject
+    SessionRepository sessionRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    @Inject
+    SessionDeletionJobRepository jobRepository;
+
+    @Inject
+    EntityManager entityManager;
+
+    @Inject
+    @Any
+    InMemoryConnector connector;
+
+    @CacheName(ParticipantCache.SESSION_PARTICIPANTS)
+    Cache participantCache;
+
+    UUID sessionId;
+    UUID patientId;
+    String term;
+
+    @BeforeEach
+    void createSession() {
+        String suffix = UUID.randomUUID().toString();
+        QuarkusTransaction.requiringNew().run(() -> {
+            User doctor = new User("Deleting Doctor", "doctor-" + suffix + "@example.com", "password", UserType.Doctor);
+            User patient = new User("Deleting Patient", "patient-" + suffix + "@example.com", "password", UserType.Patient);
+            userRepository.persist(doctor);
+            userRepository.persist(patient);
+            Session session = new Session(patient.getId(), doctor.getId(), "Deleting", LocalDateTime.now());
+            sessionRepository.persist(session);
+            sessionId = session.getSessionId();
+            patientId = patient.getId();
+        });
+        term = "deletable" + suffix.substring(0, 8);
+        for (int i = 0; i < MESSAGES; i++) {
+            MessageDTO dto = new MessageDTO();
+            dto.sessionId = sessionId;
+            dto.senderId = patientId;
+            dto.message = term + " message " + i;
+            messageService.createMessage(dto);
+        }
+        searchIndex.refresh();
+        assertEquals(MESSAGES, searchIndex.search(term, patientId, 0, 20).size());
+    }
+
+    @Test
+    void deleteSession_removesMessagesInChunks_withoutLoadingThem() {
+        Statistics statistics = entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+        statistics.clear();
+        List<Long> progress = new ArrayList<>();
+
+        assertTrue(sessionService.deleteSession(sessionId, progress::add));
+
+        assertEquals(List.of(2L, 2L, 2L, 1L), progress);
+        assertEquals(0, statistics.getEntityStatistics(Message.class.getName()).getLoadCount());
+        assertEquals(0L, QuarkusTransaction.requiringNew().call(() -> messageRepository.count("sessionId", sessionId)));
+        assertNull(QuarkusTransaction.requiringNew().call(() -> sessionRepository.findById(sessionId)));
+        searchIndex.refresh();
+        assertTrue(searchIndex.search(term, patientId, 0, 20).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> messageService.requireSession(sessionId));
+        assertFalse(sessionService.deleteSession(sessionId));
+    }
+
+    @Test
+    void deleteSession_async_returnsJob_thatFinishes() {
+        Response accepted = given().delete("/sessions/" + sessionId + "?async=true")
+                .then().statusCode(202)
+                .extract().response();
+        String location = accepted.header("Location");
+        assertTrue(location.endsWith("/sessions/deletions/" + accepted.jsonPath().getString("jobId")));
+
+        String status = accepted.jsonPath().getString("status");
+        Instant deadline = Instant.now().plus(Duration.ofSeconds(10));
+        Response job = accepted;
+        while (status.equals("RUNNING") && Instant.now().isBefore(deadline)) {
+            job = given().get(location).then().statusCode(200).extract().response();
+            status = job.jsonPath().getString("status");
+        }
+
+        assertEquals("DONE", status);
+        assertEquals(MESSAGES, job.jsonPath().getLong("deletedMessages"));
+        given().get("/sessions/" + sessionId).then().statusCode(500);
+        given().get("/sessions/deletions/" + UUID.randomUUID()).then().statusCode(404);
+    }
+
+    @Test
+    void deleteSession_async_reportsJobsOfOtherNodes_andRestartsOnesThatDied() {
+        UUID dead = otherNodesJob(LocalDateTime.now().minusHours(1));
+        UUID running = otherNodesJob(LocalDateTime.now());
+
+        // Still moving on another node: that job is the answer, and nothing starts here
+        given().delete("/sessions/" + sessionId + "?async=true")
+                .then().statusCode(202)
+                .header("Location", endsWith("/sessions/deletions/" + running));
+        given().get("/sessions/deletions/" + running).then().statusCode(200);
+        assertEquals((long) MESSAGES, QuarkusTransaction.requiringNew().call(() -> messageRepository.countBySession(sessionId)));
+
+        // Both jobs died with their node
+        QuarkusTransaction.requiringNew().run(() -> jobRepository.update("updatedAt = ?1 where jobId = ?2",
+                LocalDateTime.now().minusHours(1), running));
+        Response restarted = given().delete("/sessions/" + sessionId + "?async=true")
+                .then().statusCode(202)
+                .extract().response();
+        String jobId = restarted.jsonPath().getString("jobId");
+        assertNotEquals(dead.toString(), jobId);
+        assertNotEquals(running.toString(), jobId);
+        assertEquals(SessionDeletionJobs.FAILED, given().get("/sessions/deletions/" + dead)
+                .then().statusCode(200)
+                .extract().jsonPath().getString("status"));
+
+        String status = restarted.jsonPath().getString("status");
+        Instant deadline = Instant.now().plus(Duration.ofSeconds(10));
+        while (status.equals(SessionDeletionJobs.RUNNING) && Instant.now().isBefore(deadline)) {
+            status = given().get(restarted.header("Location")).then().statusCode(200)
+                    .extract().jsonPath().getString("status");
+        }
+        assertEquals(SessionDeletionJobs.DONE, status);
+    }
+
+    @Test
+    void sessionDeletedOnAnotherNode_isEvictedFromTheParticipantCache() throws InterruptedException {
+        messageService.requireSession(sessionId);
+        assertTrue(cachedSessions().contains(sessionId));
+
+        connector.<SessionDeletedEvent>source("session-deletions-in").send(new SessionDeletedEvent(sessionId));
+
+        // The consumer evicts on a worker thread, after the send returns
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (cachedSessions().contains(sessionId)) {
+            assertTrue(System.nanoTime() < deadline, "Session was not evicted in time");
+            Thread.sleep(20);
+        }
+    }
+
+    private Set<Object> cachedSessions() {
+        return participantCache.as(CaffeineCache.class).keySet();
+    }
+
+    /** A job row as a node that runs the delete writes it, last moved at {@code updatedAt} */
+    private UUID otherNodesJob(LocalDateTime updatedAt) {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            SessionDeletionJob job = new SessionDeletionJob(sessionId, SessionDeletionJobs.RUNNING);
+            jobRepository.persist(job);
+            jobRepository.flush();
+            jobRepository.update("updatedAt = ?1 where jobId = ?2", updatedAt, job.getJobId());
+            return job.getJobId();
+        });
+    }
+}
@@ -0,0 +1,218 @@
+package se.kth.patientjournal;
+
+import api.dto.MessageBatchResultDTO;
+import api.dto.MessageDTO;
+import api.dto.SessionDTO;
+import core.archive.MessageArchiver;
+import core.enums.UserType;
+import core.services.MessageService;
+import core.services.SessionService;
+import data.entities.Message;
+import data.entities.OutboxEvent;
+import data.entities.Session;
+import data.entities.User;
+import data.repositories.MessageRepository;
+import data.repositories.SessionRepository;
+import data.repositories.UserRepository;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.TestTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.path.json.JsonPath;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+class SessionQueryCountTest {
+
+    private static final int SESSIONS = 10;
+    private static final int MESSAGES_PER_SESSION = 3;
+
+    @Inject
+    SessionService sessionService;
+
+    @Inject
+    MessageService messageService;
+
+    @Inject
+    MessageRepository messageRepository;
+
+    @Inject
+    SessionRepository sessionRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    @Inject
+    MessageArchiver archiver;
+
+    @Inject
+    EntityManager entityManager;
+
+    @Test
+    @TestTransaction
+    void getUserSessions_withMessages_usesFixedNumberOfQueries() {
+        User doctor = new User("Query Doctor", "query-doctor@example.com", "password", UserType.Doctor);
+        userRepository.persist(doctor);
+        for (int i = 0; i < SESSIONS; i++) {
+            Session session = new Session(doctor.getId(), UUID.randomUUID(), "Subject " + i, LocalDateTime.now());
+            sessionRepository.persist(session);
+            for (int j = 0; j < MESSAGES_PER_SESSION; j++) {
+                messageRepository.persist(new Message(session, doctor, "Message " + j));
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+        statistics.clear();
+
+        List<SessionDTO> sessions = sessionService.getUserSessions(doctor.getId(), true);
+
+        assertEquals(SESSIONS, sessions.size());
+        sessions.forEach(s -> assertEquals(MESSAGES_PER_SESSION, s.messages.size()));
+        // user lookup, session list and one batch of messages, independent of the session count
+        assertTrue(statistics.getPrepareStatementCount() <= 3,
+                "Expected at most 3 statements but was " + statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getCollectionFetchCount());
+    }
+
+    @Test
+    @TestSecurity(user = "stream-query-doctor", roles = "Doctor")
+    void getUserSessionsEndpoint_withMessages_streamsAllHistoriesInOneQuery() {
+        String suffix = UUID.randomUUID().toString();
+        LocalDateTime longAgo = LocalDateTime.now().minusDays(400);
+        List<UUID> sessionIds = new ArrayList<>();
+        UUID doctorId = QuarkusTransaction.requiringNew().call(() -> {
+            User doctor = new User("Stream Query Doctor", "doctor-" + suffix + "@example.com", "password", UserType.Doctor);
+            userRepository.persist(doctor);
+            // Newest first; the third has no messages and the oldest only archived ones
+            for (int i = 0; i < SESSIONS; i++) {
+                boolean old = i == SESSIONS - 1;
+                LocalDateTime start = old ? longAgo : LocalDateTime.now().minusHours(i + 1);
+                Session session = new Session(doctor.getId(), UUID.randomUUID(), "Streamed " + i, start);
+                sessionRepository.persist(session);
+                sessionIds.add(session.getSessionId());
+                if (i == 2) {
+                    continue;
+                }
+                for (int j = 0; j < MESSAGES_PER_SESSION; j++) {
+                    Message message = new Message(session, doctor, "Message " + j);
+                    message.setDateTime(start.plusMinutes(j));
+                    messageRepository.persist(message);
+                    sessionRepository.recordMessageAdded(session.getSessionId(), message.getMessageId(), "Message " + j, message.getDateTime());
+                }
+            }
+            return doctor.getId();
+        });
+        archiver.archiveBefore(LocalDateTime.now().minusDays(365));
+
+        Statistics statistics = entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+        statistics.clear();
+
+        JsonPath sessions = given().queryParam("includeMessages", true)
+                .get("/sessions/user/" + doctorId)
+                .then().statusCode(200)
+                .extract().jsonPath();
+
+        assertEquals(sessionIds.stream().map(UUID::toString).toList(), sessions.getList("sessionId", String.class));
+        for (int i = 0; i < SESSIONS; i++) {
+            assertEquals(i == 2 ? 0 : MESSAGES_PER_SESSION, sessions.getList("[" + i + "].messages").size());
+        }
+        assertEquals("Message 2", sessions.getString("[" + (SESSIONS - 1) + "].messages[2].message"));
+        // user lookup and revisions for the ETag, the session list and one cursor over all
+        // histories, archived ones included, independent of the session count
+        assertTrue(statistics.getPrepareStatementCount() <= 4,
+                "Expected at most 4 statements but was " + statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @TestTransaction
+    void createMessage_withCachedParticipants_onlyWrites() {
+        User doctor = new User("Cache Doctor", "cache-doctor@example.com", "password", UserType.Doctor);
+        userRepository.persist(doctor);
+        Session session = new Session(doctor.getId(), UUID.randomUUID(), "Cached", LocalDateTime.now());
+        sessionRepository.persist(session);
+        entityManager.flush();
+        entityManager.clear();
+
+        MessageDTO dto = new MessageDTO();
+        dto.sessionId = session.getSessionId();
+        dto.senderId = doctor.getId();
+        dto.message = "first";
+        messageService.createMessage(dto);
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+        statistics.clear();
+
+        dto.message = "second";
+        messageService.createMessage(dto);
+        entityManager.flush();
+
+        // the message and outbox INSERTs, the session summary UPDATE and reading back the
+        // event sequence it reserved; no lookups
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(4, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @TestTransaction
+    void createMessages_validatesOnceAndBatchesInserts() {
+        User doctor = new User("Batch Doctor", "batch-doctor@example.com", "password", UserType.Doctor);
+        userRepository.persist(doctor);
+        Session first = new Session(doctor.getId(), UUID.randomUUID(), "Batch 1", LocalDateTime.now());
+        Session second = new Session(doctor.getId(), UUID.randomUUID(), "Batch 2", LocalDateTime.now());
+        sessionRepository.persist(first);
+        sessionRepository.persist(second);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<MessageDTO> batch = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            Session target = i % 2 == 0 ? first : second;
+            batch.add(new MessageDTO(null, target.getSessionId(), doctor.getId(), "Imported " + i, null));
+        }
+        batch.add(new MessageDTO(null, UUID.randomUUID(), doctor.getId(), "Unknown session", null));
+
+        Statistics statistics = entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+        statistics.clear();
+
+        MessageBatchResultDTO result = messageService.createMessages(batch);
+        entityManager.flush();
+
+        assertEquals(250, result.created.size());
+        assertEquals(1, result.errors.size());
+        assertEquals(250, result.errors.get(0).index);
+        assertEquals(250, statistics.getEntityStatistics(Message.class.getName()).getInsertCount());
+        assertEquals(250, statistics.getEntityStatistics(OutboxEvent.class.getName()).getInsertCount());
+        // session and user lookups, three batches each of messages and outbox events,
+        // and one summary update and sequence read per session
+        assertTrue(statistics.getPrepareStatementCount() <= 10,
+                "Expected at most 10 statements but was " + statistics.getPrepareStatementCount());
+
+        entityManager.clear();
+        assertEquals(125L, sessionRepository.findById(first.getSessionId()).getMessageCount());
+        assertEquals(125L, sessionRepository.findById(second.getSessionId()).getMessageCount());
+    }
+}
@@ -0,0 +1,106 @@
+package se.kth.patientjournal;
+
+import core.enums.UserType;
+import data.entities.Message;
+import data.entities.Session;
+import data.entities.User;
+import data.repositories.MessageRepository;
+import data.repositories.SessionRepository;
+import data.repositories.UserRepository;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.path.json.JsonPath;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+@TestSecurity(user = "streaming-doctor", roles = "Doctor")
+class StreamingResponseTest {
+
+    private static final int MESSAGES = 5;
+
+    @Inject
+    MessageRepository messageRepository;
+
+    @Inject
+    SessionRepository sessionRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    UUID sessionId;
+    UUID doctorId;
+
+    @BeforeEach
+    void createSession() {
+        String suffix = UUID.randomUUID().toString();
+        QuarkusTransaction.requiringNew().run(() -> {
+            User doctor = new User("Streaming Doctor", "doctor-" + suffix + "@example.com", "password", UserType.Doctor);
+            User patient = new User("Streaming Patient", "patient-" + suffix + "@example.com", "password", UserType.Patient);
+            userRepository.persist(doctor);
+            userRepository.persist(patient);
+            LocalDateTime start = LocalDateTime.now().minusHours(1);
+            Session session = new Session(patient.getId(), doctor.getId(), "Streaming", start);
+            sessionRepository.persist(session);
+            for (int i = 0; i < MESSAGES; i++) {
+                Message message = new Message(session, patient, "Message " + i);
+                message.setDateTime(start.plusMinutes(i));
+                messageRepository.persist(message);
+            }
+            sessionId = session.getSessionId();
+            doctorId = doctor.getId();
+        });
+    }
+
+    @Test
+    void getSessionMessages_streamsJsonArrayInChronologicalOrder() {
+        List<String> contents = given().get("/messages/session/" + sessionId)
+                .then().statusCode(200).contentType("application/json")
+                .extract().jsonPath().getList("message", String.class);
+
+        assertEquals(List.of("Message 0", "Message 1", "Message 2", "Message 3", "Message 4"), contents);
+    }
+
+    @Test
+    void getSessionMessages_asNdjson_writesOneMessagePerLine() {
+        String body = given().accept("application/x-ndjson")
+                .get("/messages/session/" + sessionId)
+                .then().statusCode(200).contentType("application/x-ndjson")
+                .extract().asString();
+
+        List<String> lines = body.lines().toList();
+        assertEquals(MESSAGES, lines.size());
+        assertTrue(body.endsWith("\n"));
+        assertEquals("Message 0", new JsonPath(lines.get(0)).getString("message"));
+        assertEquals(sessionId.toString(), new JsonPath(lines.get(4)).getString("sessionId"));
+    }
+
+    @Test
+    void getSessionMessages_unknownSession_failsBeforeStreaming() {
+        given().get("/messages/session/" + UUID.randomUUID())
+                .then().statusCode(500);
+    }
+
+    @Test
+    void getUserSessions_withMessages_nestsStreamedMessages() {
+        JsonPath sessions = given().queryParam("includeMessages", true)
+                .get("/sessions/user/" + doctorId)
+                .then().statusCode(200)
+                .extract().jsonPath();
+
+        assertEquals(1, sessions.getList("$").size());
+        assertEquals(sessionId.toString(), sessions.getString("[0].sessionId"));
+        assertEquals("Streaming", sessions.getString("[0].subject"));
+        assertEquals(MESSAGES, sessions.getList("[0].messages").size());
+        assertEquals("Message 4", sessions.getString("[0].messages[4].message"));
+    }
+}
@@ -0,0 +1,71 @@
+package se.kth.patientjournal;
+
+import core.enums.UserType;
+import data.entities.Session;
+import data.entities.User;
+import data.repositories.SessionRepository;
+import data.repositories.UserRepository;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.quarkus.test.junit5.virtual.ShouldNotPin;
+import io.quarkus.test.junit5.virtual.VirtualThreadUnit;
+import io.restassured.http.ContentType;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static io.restassured.RestAssured.given;
+
+/**
+ * Drives the read and write endpoints end to end and fails if a virtual thread blocked
+ * while pinned to its carrier, e.g. on JDBC inside a synchronized block.
+ */
+@QuarkusTest
+@VirtualThreadUnit
+@ShouldNotPin
+@TestSecurity(user = "pinning-doctor", roles = "Doctor")
+class VirtualThreadPinningTest {
+
+    @Inject
+    SessionRepository sessionRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    @Test
+    void readAndWriteEndpoints_doNotPinCarrierThreads() {
+        UUID[] ids = QuarkusTransaction.requiringNew().call(() -> {
+            User doctor = new User("Pinning Doctor", "pinning-doctor@example.com", "password", UserType.Doctor);
+            User patient = new User("Pinning Patient", "pinning-patient@example.com", "password", UserType.Patient);
+            userRepository.persist(doctor);
+            userRepository.persist(patient);
+            Session session = new Session(patient.getId(), doctor.getId(), "Pinning", LocalDateTime.now());
+            sessionRepository.persist(session);
+            return new UUID[] {session.getSessionId(), patient.getId(), doctor.getId()};
+        });
+        UUID sessionId = ids[0];
+        UUID patientId = ids[1];
+        UUID doctorId = ids[2];
+
+        given().contentType(ContentType.JSON)
+                .body(Map.of("sessionId", sessionId, "senderId", patientId, "message", "Single"))
+                .post("/messages")
+                .then().statusCode(200);
+        given().contentType(ContentType.JSON)
+                .body(List.of(
+                        Map.of("sessionId", sessionId, "senderId", doctorId, "message", "First"),
+                        Map.of("sessionId", sessionId, "senderId", patientId, "message", "Second")))
+                .post("/messages/batch")
+                .then().statusCode(200);
+
+        given().get("/messages/session/" + sessionId + "/page").then().statusCode(200);
+        given().get("/messages/latest/session/" + sessionId).then().statusCode(200);
+        given().get("/sessions/inbox/user/" + doctorId).then().statusCode(200);
+        given().get("/messages/count/session/" + sessionId).then().statusCode(200);
+    }
+}